@@ -1,16 +1,29 @@
 package com.penguineering.hareairis.ai;
 
 import com.azure.core.exception.HttpResponseException;
+import com.penguineering.hareairis.conversation.ConversationStore;
+import com.penguineering.hareairis.conversation.ConversationTurn;
 import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatMetadata;
 import com.penguineering.hareairis.model.ChatRequest;
 import com.penguineering.hareairis.model.ChatResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.azure.openai.AzureOpenAiChatOptions;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Service to handle chat requests.
@@ -20,56 +33,140 @@ import java.util.Objects;
 @Service
 public class AIChatService {
     private static final Logger logger = LoggerFactory.getLogger(AIChatService.class);
-    private final ChatClient.Builder chatClientBuilder;
+    private final ChatClient chatClient;
+    private final ConversationStore conversationStore;
+    private final String endpoint;
+    private final Optional<String> defaultDeployment;
 
-    public AIChatService(ChatClient.Builder chatClientBuilder) {
-        this.chatClientBuilder = chatClientBuilder;
+    public AIChatService(ChatClient.Builder chatClientBuilder,
+                         ConversationStore conversationStore,
+                         @Value("${spring.ai.azure.openai.endpoint}") String endpoint,
+                         @Value("${spring.ai.azure.openai.chat.options.deployment-name}") String defaultDeployment) {
+        // Options are set per request, so the client can be shared between concurrent requests
+        this.chatClient = chatClientBuilder.build();
+        this.conversationStore = conversationStore;
+        this.endpoint = endpoint;
+        this.defaultDeployment = Optional.ofNullable(defaultDeployment).filter(StringUtils::hasText);
     }
 
     /**
      * Handles a chat request.
      *
+     * <p>If the request has a conversation ID, the prior turns are sent as message history and the new turn is
+     * stored after a successful response.</p>
+     *
      * @param chatRequest The chat request to handle.
+     * @param deployment  The deployment to use, empty for the configured default.
      * @return The chat response.
      */
-    public ChatResponse handleChatRequest(ChatRequest chatRequest) {
+    public ChatResponse handleChatRequest(ChatRequest chatRequest, Optional<String> deployment) {
         try {
-            AzureOpenAiChatOptions options = renderAzureOpenAiChatOptions(chatRequest);
+            Optional<String> conversationId = Optional.ofNullable(chatRequest.getConversationId());
 
-            ChatClient chatClient = chatClientBuilder
-                    .defaultOptions(options)
-                    .defaultSystem(chatRequest.getSystemMessage())
-                    .build();
-            var chatResponse = chatClient
-                    .prompt()
-                    .user(chatRequest.getPrompt())
+            long start = System.nanoTime();
+            var chatResponse = renderPrompt(chatRequest, deployment, conversationId)
                     .call()
                     .chatResponse();
+            Duration upstreamLatency = Duration.ofNanos(System.nanoTime() - start);
 
             String response = chatResponse.getResult().getOutput().getContent();
 
+            conversationId.ifPresent(id -> conversationStore.addTurn(id,
+                    new ConversationTurn(chatRequest.getPrompt(), response)));
+
             Long promptTokens = chatResponse.getMetadata().getUsage().getPromptTokens();
             Long generationTokens = chatResponse.getMetadata().getUsage().getGenerationTokens();
 
+            ChatMetadata metadata = ChatMetadata.builder()
+                    .upstreamLatencyMs(upstreamLatency.toMillis())
+                    .endpoint(endpoint)
+                    // the response only names the model, not the deployment that has been called
+                    .deployment(deployment.or(() -> defaultDeployment).orElse(null))
+                    .finishReason(chatResponse.getResult().getMetadata().getFinishReason())
+                    .build();
+
             return ChatResponse.builder()
                     .response(response)
                     .inputTokens(promptTokens.intValue())
                     .outputTokens(generationTokens.intValue())
+                    .metadata(metadata)
                     .build();
         } catch (IllegalArgumentException e) {
             throw new ChatException(ChatException.Code.CODE_BAD_REQUEST, e.getMessage());
         } catch (HttpResponseException e) {
-            var response = e.getResponse();
-            if (response.getStatusCode() == 429)
-                throw RateLimitException.fromHttpResponse(response, logger::warn);
+            throw mapHttpResponseException(e);
+        }
+    }
+
+    /**
+     * Handles a chat request with a streamed response.
+     *
+     * <p>If the request has a conversation ID, the new turn is stored once the stream has completed.</p>
+     *
+     * @param chatRequest The chat request to handle.
+     * @param deployment  The deployment to use, empty for the configured default.
+     * @return The stream of response fragments.
+     */
+    public Flux<String> streamChatRequest(ChatRequest chatRequest, Optional<String> deployment) {
+        try {
+            Optional<String> conversationId = Optional.ofNullable(chatRequest.getConversationId());
+            StringBuilder response = new StringBuilder();
+
+            return renderPrompt(chatRequest, deployment, conversationId)
+                    .stream()
+                    .content()
+                    .doOnNext(response::append)
+                    .doOnComplete(() -> conversationId.ifPresent(id -> conversationStore.addTurn(id,
+                            new ConversationTurn(chatRequest.getPrompt(), response.toString()))))
+                    .onErrorMap(IllegalArgumentException.class,
+                            e -> new ChatException(ChatException.Code.CODE_BAD_REQUEST, e.getMessage()))
+                    .onErrorMap(HttpResponseException.class, AIChatService::mapHttpResponseException);
+        } catch (IllegalArgumentException e) {
+            throw new ChatException(ChatException.Code.CODE_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private ChatClient.ChatClientRequestSpec renderPrompt(ChatRequest chatRequest,
+                                                          Optional<String> deployment,
+                                                          Optional<String> conversationId) {
+        List<Message> history = conversationId
+                .map(conversationStore::getTurns)
+                .map(AIChatService::renderHistory)
+                .orElse(List.of());
+
+        ChatClient.ChatClientRequestSpec spec = chatClient
+                .prompt()
+                .options(renderAzureOpenAiChatOptions(chatRequest, deployment));
+        if (StringUtils.hasText(chatRequest.getSystemMessage()))
+            spec = spec.system(chatRequest.getSystemMessage());
+
+        return spec
+                .messages(history)
+                .user(chatRequest.getPrompt());
+    }
+
+    private static ChatException mapHttpResponseException(HttpResponseException e) {
+        var response = e.getResponse();
+        if (response.getStatusCode() == 429)
+            return RateLimitException.fromHttpResponse(response, logger::warn);
+
+        return new ChatException(response.getStatusCode(), e.getMessage());
+    }
 
-            throw new ChatException(response.getStatusCode(), e.getMessage());
+    private static List<Message> renderHistory(List<ConversationTurn> turns) {
+        List<Message> messages = new ArrayList<>(turns.size() * 2);
+        for (ConversationTurn turn : turns) {
+            messages.add(new UserMessage(turn.prompt()));
+            messages.add(new AssistantMessage(turn.response()));
         }
+        return messages;
     }
 
-    private static AzureOpenAiChatOptions renderAzureOpenAiChatOptions(ChatRequest chatRequest) {
+    private static AzureOpenAiChatOptions renderAzureOpenAiChatOptions(ChatRequest chatRequest,
+                                                                       Optional<String> deployment) {
         AzureOpenAiChatOptions options = new AzureOpenAiChatOptions();
 
+        deployment.ifPresent(options::setDeploymentName);
         if (Objects.nonNull(chatRequest.getMaxTokens()))
             options.setMaxTokens(chatRequest.getMaxTokens());
         if (Objects.nonNull(chatRequest.getTemperature()))
@@ -0,0 +1,97 @@
+package com.penguineering.hareairis.ai;
+
+import com.azure.core.exception.HttpResponseException;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.EmbeddingRequest;
+import com.penguineering.hareairis.model.EmbeddingResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service to handle embedding requests.
+ *
+ * <p>Sends a batch of embedding requests to the AI service in a single call.</p>
+ */
+@Service
+public class AIEmbeddingService {
+    private static final Logger logger = LoggerFactory.getLogger(AIEmbeddingService.class);
+    private final EmbeddingModel embeddingModel;
+
+    public AIEmbeddingService(EmbeddingModel embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Handles a batch of embedding requests with one call to the AI service.
+     *
+     * @param requests The embedding requests to handle.
+     * @return The embedding responses, in the order of the requests.
+     */
+    public List<EmbeddingResponse> handleEmbeddingRequests(List<EmbeddingRequest> requests) {
+        try {
+            List<String> inputs = requests.stream().map(EmbeddingRequest::getInput).toList();
+
+            var embeddingResponse = embeddingModel.embedForResponse(inputs);
+
+            List<Embedding> embeddings = embeddingResponse.getResults().stream()
+                    .sorted(Comparator.comparing(Embedding::getIndex))
+                    .toList();
+            if (embeddings.size() != inputs.size())
+                throw new ChatException("Expected " + inputs.size() + " embeddings, but received " + embeddings.size() + ".");
+
+            long promptTokens = Optional.ofNullable(embeddingResponse.getMetadata().getUsage().getPromptTokens())
+                    .orElse(0L);
+            int[] inputTokens = splitTokens(promptTokens, inputs);
+
+            List<EmbeddingResponse> responses = new ArrayList<>(inputs.size());
+            for (int i = 0; i < inputs.size(); i++)
+                responses.add(EmbeddingResponse.builder()
+                        .embedding(embeddings.get(i).getOutput())
+                        .inputTokens(inputTokens[i])
+                        .batchSize(inputs.size())
+                        .build());
+
+            return responses;
+        } catch (IllegalArgumentException e) {
+            throw new ChatException(ChatException.Code.CODE_BAD_REQUEST, e.getMessage());
+        } catch (HttpResponseException e) {
+            var response = e.getResponse();
+            if (response.getStatusCode() == 429)
+                throw RateLimitException.fromHttpResponse(response, logger::warn);
+
+            throw new ChatException(response.getStatusCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the prompt tokens of a batch among its inputs in proportion to their length.
+     *
+     * <p>The remainder of the rounding goes to the longest input, so that the shares add up to the prompt tokens of
+     * the batch.</p>
+     */
+    static int[] splitTokens(long promptTokens, List<String> inputs) {
+        long totalLength = Math.max(1, inputs.stream().mapToLong(String::length).sum());
+
+        int[] shares = new int[inputs.size()];
+        long assigned = 0;
+        int longest = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            shares[i] = (int) (promptTokens * inputs.get(i).length() / totalLength);
+            assigned += shares[i];
+            if (inputs.get(i).length() > inputs.get(longest).length())
+                longest = i;
+        }
+        if (shares.length > 0)
+            shares[longest] += (int) (promptTokens - assigned);
+
+        return shares;
+    }
+}
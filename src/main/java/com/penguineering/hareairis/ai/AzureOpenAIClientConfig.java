@@ -0,0 +1,107 @@
+package com.penguineering.hareairis.ai;
+
+import com.azure.ai.openai.OpenAIClientBuilder;
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of the Azure OpenAI client.
+ *
+ * <p>The client builder is created by the Spring AI auto-configuration, this configuration only adds to it.</p>
+ */
+@Configuration
+public class AzureOpenAIClientConfig {
+
+    @Value("${hareairis.upstream.max-connections}")
+    private int maxConnections;
+
+    @Value("${hareairis.upstream.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${hareairis.upstream.http2}")
+    private boolean http2;
+
+    @Value("${hareairis.upstream.connect-timeout}")
+    private Duration connectTimeout;
+
+    @Value("${hareairis.upstream.read-timeout}")
+    private Duration readTimeout;
+
+    @Value("${hareairis.upstream.pending-acquire-timeout}")
+    private Duration pendingAcquireTimeout;
+
+    /**
+     * Provides the HTTP client for the calls to the AI service.
+     *
+     * <p>Chat and embedding calls share this client and its connection pool. Idle connections are kept open for the
+     * keep-alive time, so that subsequent calls do not pay for connection and TLS setup. If all connections are in
+     * use, a call waits up to the pending acquire timeout for a connection to be released. The pool is exposed in the
+     * <code>reactor.netty.connection.provider</code> metrics.</p>
+     *
+     * @return The HTTP client.
+     */
+    @Bean
+    public HttpClient upstreamHttpClient() {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("hareairis-upstream")
+                .maxConnections(maxConnections)
+                .maxIdleTime(keepAlive)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .metrics(true)
+                .evictInBackground(keepAlive)
+                .build();
+
+        reactor.netty.http.client.HttpClient nettyClient = reactor.netty.http.client.HttpClient
+                .create(connectionProvider)
+                .keepAlive(true);
+        if (http2)
+            nettyClient = nettyClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+
+        return new NettyAsyncHttpClientBuilder(nettyClient)
+                .connectTimeout(connectTimeout)
+                .responseTimeout(readTimeout)
+                .readTimeout(readTimeout)
+                .build();
+    }
+
+    /**
+     * Adds the HareAIris specific policies to the OpenAI client builder.
+     *
+     * <p>The post-processor is static so that it does not force early initialization of this configuration.</p>
+     *
+     * @param httpClient The upstream HTTP client.
+     * @param tracer     The tracer, if tracing is enabled.
+     * @param propagator The propagator, if tracing is enabled.
+     * @return The bean post-processor.
+     */
+    @Bean
+    public static BeanPostProcessor openAIClientBuilderPostProcessor(ObjectProvider<HttpClient> httpClient,
+                                                                     ObjectProvider<Tracer> tracer,
+                                                                     ObjectProvider<Propagator> propagator) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof OpenAIClientBuilder builder) {
+                    httpClient.ifAvailable(builder::httpClient);
+
+                    Tracer t = tracer.getIfAvailable();
+                    Propagator p = propagator.getIfAvailable();
+                    if (Objects.nonNull(t) && Objects.nonNull(p))
+                        builder.addPolicy(new TraceContextPolicy(t, p));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.penguineering.hareairis.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatRequest;
+import com.penguineering.hareairis.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.Callable;
+
+/**
+ * Coalesces identical chat requests that are in flight at the same time.
+ *
+ * <p>Requests are identical if all their fields match. Only one of them is sent to the AI service, the others
+ * receive the same response.</p>
+ */
+@Component
+public class ChatRequestCoalescer {
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final SingleFlight<String, ChatResponse> singleFlight = new SingleFlight<>();
+
+    public ChatRequestCoalescer(ObjectMapper objectMapper,
+                                @Value("${hareairis.coalescing.enabled}") boolean enabled) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Executes the chat call, unless an identical request is already in flight.
+     *
+     * @param chatRequest The chat request.
+     * @param call        The call to handle the chat request.
+     * @return The outcome of the call, shared if the response has been taken from an identical request.
+     * @throws Exception If the call throws an exception.
+     */
+    public SingleFlight.Outcome<ChatResponse> call(ChatRequest chatRequest,
+                                                   Callable<ChatResponse> call) throws Exception {
+        if (!enabled)
+            return new SingleFlight.Outcome<>(call.call(), false);
+
+        return singleFlight.execute(contentKey(chatRequest), call);
+    }
+
+    private String contentKey(ChatRequest chatRequest) {
+        try {
+            byte[] content = objectMapper.writeValueAsBytes(chatRequest);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new ChatException("Failed to compute content key: " + e.getMessage());
+        }
+    }
+}
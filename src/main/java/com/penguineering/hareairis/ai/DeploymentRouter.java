@@ -0,0 +1,74 @@
+package com.penguineering.hareairis.ai;
+
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Selects the model deployment for a chat request.
+ *
+ * <p>A deployment named in the request takes precedence. Otherwise the routes of the routing policy are checked in
+ * order. If no route matches, the deployment configured for the chat model is used.</p>
+ *
+ * <p>A request may only name the default deployment, a deployment of the routes or one of the further configured
+ * deployments, so that clients cannot send arbitrary deployment names upstream.</p>
+ */
+@Component
+public class DeploymentRouter {
+    private final DeploymentRoutingProperties properties;
+    private final Set<String> allowedDeployments = new HashSet<>();
+
+    public DeploymentRouter(DeploymentRoutingProperties properties,
+                            @Value("${spring.ai.azure.openai.chat.options.deployment-name}") String defaultDeployment) {
+        this.properties = properties;
+
+        allowedDeployments.add(defaultDeployment);
+        properties.routes().forEach(route -> allowedDeployments.add(route.deployment()));
+        allowedDeployments.addAll(properties.deployments());
+    }
+
+    /**
+     * Selects the deployment for a chat request.
+     *
+     * @param chatRequest The chat request.
+     * @return The deployment, empty to use the configured default deployment.
+     * @throws ChatException If the request names a deployment that is not allowed.
+     */
+    public Optional<String> route(ChatRequest chatRequest) {
+        if (StringUtils.hasText(chatRequest.getDeployment())) {
+            if (!allowedDeployments.contains(chatRequest.getDeployment()))
+                throw new ChatException(ChatException.Code.CODE_BAD_REQUEST,
+                        "Unknown deployment: " + chatRequest.getDeployment());
+            return Optional.of(chatRequest.getDeployment());
+        }
+
+        return properties.routes().stream()
+                .filter(route -> matches(route, chatRequest))
+                .map(DeploymentRoutingProperties.Route::deployment)
+                .findFirst();
+    }
+
+    private static boolean matches(DeploymentRoutingProperties.Route route, ChatRequest chatRequest) {
+        if (Objects.nonNull(route.maxPromptChars()) && promptChars(chatRequest) > route.maxPromptChars())
+            return false;
+
+        if (Objects.nonNull(route.maxTokens()))
+            if (Objects.isNull(chatRequest.getMaxTokens()) || chatRequest.getMaxTokens() > route.maxTokens())
+                return false;
+
+        return route.latencyClasses().isEmpty()
+                || route.latencyClasses().contains(chatRequest.getLatencyClass());
+    }
+
+    private static int promptChars(ChatRequest chatRequest) {
+        return Optional.ofNullable(chatRequest.getSystemMessage()).map(String::length).orElse(0)
+                + Optional.ofNullable(chatRequest.getPrompt()).map(String::length).orElse(0);
+    }
+}
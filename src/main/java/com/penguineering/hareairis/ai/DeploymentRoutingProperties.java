@@ -0,0 +1,41 @@
+package com.penguineering.hareairis.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Routing policy for chat requests.
+ *
+ * @param routes      The routes for requests that do not name a deployment, checked in the given order. The first
+ *                    matching route wins.
+ * @param deployments Further deployments requests may name, in addition to the default deployment and the
+ *                    deployments of the routes.
+ */
+@ConfigurationProperties("hareairis.routing")
+public record DeploymentRoutingProperties(List<Route> routes, List<String> deployments) {
+    public DeploymentRoutingProperties {
+        routes = Objects.isNull(routes) ? List.of() : List.copyOf(routes);
+        deployments = Objects.isNull(deployments) ? List.of() : List.copyOf(deployments);
+    }
+
+    /**
+     * A route to a deployment. All given limits must be met for the route to match, omitted limits always match.
+     *
+     * @param deployment      The deployment to use.
+     * @param maxPromptChars  The maximum number of characters of the system message and prompt.
+     * @param maxTokens       The maximum value of <code>max-tokens</code>. Requests without <code>max-tokens</code>
+     *                        do not match if this limit is set.
+     * @param latencyClasses  The latency classes this route is used for.
+     */
+    public record Route(String deployment,
+                        Integer maxPromptChars,
+                        Integer maxTokens,
+                        List<String> latencyClasses) {
+        public Route {
+            Objects.requireNonNull(deployment, "A route needs a deployment.");
+            latencyClasses = Objects.isNull(latencyClasses) ? List.of() : List.copyOf(latencyClasses);
+        }
+    }
+}
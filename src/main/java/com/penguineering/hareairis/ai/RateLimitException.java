@@ -92,6 +92,7 @@ public class RateLimitException extends ChatException {
      *
      * @return The optional retry after time.
      */
+    @Override
     public Optional<Instant> getRetryAfter() {
         return Optional.ofNullable(retryAfter);
     }
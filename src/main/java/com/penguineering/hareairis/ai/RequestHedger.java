@@ -0,0 +1,271 @@
+package com.penguineering.hareairis.ai;
+
+import com.penguineering.hareairis.model.ChatMetadata;
+import com.penguineering.hareairis.model.ChatResponse;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Hedges upstream calls to cut the tail latency.
+ *
+ * <p>If a call has not answered after the hedging delay, a duplicate call is sent to the hedge deployment. The first
+ * successful response is used and the other call is cancelled. The delay is either fixed or the configured percentile
+ * of the recently observed latencies. The share of hedged calls among the recent calls is capped by the hedging
+ * budget.</p>
+ *
+ * <p>Tokens are counted per call in the meter <code>hareairis.upstream.tokens</code>, tagged with
+ * <code>call=primary</code> or <code>call=hedge</code>, so that the extra spend of hedging can be told apart. Calls
+ * that complete after they have been cancelled are tagged with <code>call=cancelled</code>. Calls that are aborted by
+ * the cancellation are counted in <code>hareairis.hedging.aborted</code>, and their estimated input tokens in
+ * <code>hareairis.hedging.aborted.tokens</code>, as the AI service may have processed the prompt already.</p>
+ *
+ * <p>The latency of a primary call that is cancelled in favour of the hedge is sampled with the time it has taken
+ * until then, so that slow calls are not left out of the percentile.</p>
+ */
+@Component
+public class RequestHedger {
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+    private static final int LATENCY_SAMPLES = 200;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final int BUDGET_WINDOW = 100;
+
+    private final boolean enabled;
+    private final Duration fixedDelay;
+    private final Duration minDelay;
+    private final double percentile;
+    private final double budget;
+    private final Optional<String> hedgeDeployment;
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+    // hedged flags of the recent primary calls, indexed by the call sequence number
+    private final boolean[] hedgedWindow = new boolean[BUDGET_WINDOW];
+    private long callCount = 0;
+    private int windowHedges = 0;
+
+    public RequestHedger(@Value("${hareairis.hedging.enabled}") boolean enabled,
+                         @Value("${hareairis.hedging.delay}") Duration fixedDelay,
+                         @Value("${hareairis.hedging.min-delay}") Duration minDelay,
+                         @Value("${hareairis.hedging.percentile}") double percentile,
+                         @Value("${hareairis.hedging.budget}") double budget,
+                         @Value("${hareairis.hedging.deployment}") String hedgeDeployment,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.fixedDelay = fixedDelay;
+        this.minDelay = minDelay;
+        this.percentile = percentile;
+        this.budget = budget;
+        this.hedgeDeployment = Optional.ofNullable(hedgeDeployment).filter(StringUtils::hasText);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Executes an upstream call, hedging it if it takes too long.
+     *
+     * @param deployment           The deployment of the primary call, empty for the configured default.
+     * @param estimatedInputTokens The estimated input tokens of the call, counted if the call is aborted.
+     * @param call                 The upstream call for a given deployment.
+     * @return The first successful response, with <code>hedged</code> set in the metadata if a hedge was sent.
+     * @throws Exception            The exception of the primary call, if no call succeeded.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public ChatResponse call(Optional<String> deployment,
+                             int estimatedInputTokens,
+                             Function<Optional<String>, ChatResponse> call) throws Exception {
+        if (!enabled)
+            return measured("primary", deployment, call, new AtomicBoolean(false), estimatedInputTokens).call();
+
+        long sequence = recordCall();
+        Optional<Duration> delay = hedgeDelay();
+
+        ExecutorCompletionService<ChatResponse> completion = new ExecutorCompletionService<>(executor);
+        long start = System.nanoTime();
+        AtomicBoolean primaryCancelled = new AtomicBoolean(false);
+        AtomicBoolean hedgeCancelled = new AtomicBoolean(false);
+        Future<ChatResponse> primary = completion.submit(wrap(
+                measured("primary", deployment, call, primaryCancelled, estimatedInputTokens)));
+        Future<ChatResponse> hedge = null;
+
+        try {
+            Future<ChatResponse> done = delay.isPresent()
+                    ? completion.poll(delay.get().toMillis(), TimeUnit.MILLISECONDS)
+                    : primary;
+            if (Objects.nonNull(done) || !tryAcquireBudget(sequence))
+                return unwrap(primary);
+
+            logger.info("Upstream call did not answer within {} ms, sending hedge.", delay.get().toMillis());
+            Optional<String> target = hedgeDeployment.or(() -> deployment);
+            hedge = completion.submit(wrap(
+                    measured("hedge", target, call, hedgeCancelled, estimatedInputTokens)));
+
+            Future<ChatResponse> first = completion.take();
+            Future<ChatResponse> second = first == primary ? hedge : primary;
+            try {
+                ChatResponse response = first.get();
+                if (cancel(second, second == primary ? primaryCancelled : hedgeCancelled) && second == primary)
+                    // a lower bound of the latency of the primary call
+                    recordLatency(System.nanoTime() - start);
+                return markHedged(response, first == primary ? "primary" : "hedge");
+            } catch (ExecutionException e) {
+                completion.take();
+                if (second.state() == Future.State.SUCCESS)
+                    return markHedged(second.resultNow(), second == primary ? "primary" : "hedge");
+
+                // both calls failed, report the failure of the primary call
+                return unwrap(primary);
+            }
+        } finally {
+            cancel(primary, primaryCancelled);
+            if (Objects.nonNull(hedge))
+                cancel(hedge, hedgeCancelled);
+        }
+    }
+
+    /**
+     * Cancels a call that is still in flight, flagging it as cancelled before it is interrupted.
+     *
+     * @return True if the call has been cancelled.
+     */
+    private static boolean cancel(Future<ChatResponse> future, AtomicBoolean cancelled) {
+        if (future.isDone())
+            return false;
+
+        cancelled.set(true);
+        return future.cancel(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Callable<ChatResponse> measured(String type, Optional<String> deployment,
+                                            Function<Optional<String>, ChatResponse> call,
+                                            AtomicBoolean cancelled, int estimatedInputTokens) {
+        return () -> {
+            long start = System.nanoTime();
+            ChatResponse response;
+            try {
+                response = call.apply(deployment);
+            } catch (RuntimeException e) {
+                if (cancelled.get()) {
+                    meterRegistry.counter("hareairis.hedging.aborted", "call", type).increment();
+                    meterRegistry.counter("hareairis.hedging.aborted.tokens", "call", type, "direction", "input")
+                            .increment(estimatedInputTokens);
+                }
+                throw e;
+            }
+
+            // a cancelled call that did not react to the interruption has still been paid for
+            String tag = cancelled.get() ? "cancelled" : type;
+            if (!cancelled.get())
+                recordLatency(System.nanoTime() - start);
+
+            meterRegistry.counter("hareairis.upstream.tokens", "call", tag, "direction", "input")
+                    .increment(response.getInputTokens());
+            meterRegistry.counter("hareairis.upstream.tokens", "call", tag, "direction", "output")
+                    .increment(response.getOutputTokens());
+            return response;
+        };
+    }
+
+    /**
+     * Passes the observation context on to the thread executing the call, so that the call is part of the trace.
+     */
+    private Callable<ChatResponse> wrap(Callable<ChatResponse> callable) {
+        return contextSnapshotFactory.captureAll().wrap(callable);
+    }
+
+    private ChatResponse markHedged(ChatResponse response, String winner) {
+        meterRegistry.counter("hareairis.hedging.hedges", "winner", winner).increment();
+
+        ChatMetadata metadata = Objects.isNull(response.getMetadata())
+                ? ChatMetadata.builder().build()
+                : response.getMetadata();
+        return response.toBuilder()
+                .metadata(metadata.toBuilder().hedged(true).build())
+                .build();
+    }
+
+    /**
+     * Records a primary call in the budget window.
+     *
+     * @return The sequence number of the call.
+     */
+    synchronized long recordCall() {
+        int slot = (int) (callCount % BUDGET_WINDOW);
+        if (hedgedWindow[slot])
+            windowHedges--;
+        hedgedWindow[slot] = false;
+        return callCount++;
+    }
+
+    /**
+     * Acquires the budget to hedge a call, if the share of hedged calls among the recent calls allows for it.
+     *
+     * @param sequence The sequence number of the call to hedge.
+     * @return True if the call may be hedged.
+     */
+    synchronized boolean tryAcquireBudget(long sequence) {
+        if (windowHedges + 1 > budget * Math.min(callCount, BUDGET_WINDOW)) {
+            logger.debug("Hedging budget exhausted, waiting for the primary call.");
+            return false;
+        }
+
+        // a call that has left the window does not count towards the budget anymore
+        if (callCount - sequence <= BUDGET_WINDOW) {
+            hedgedWindow[(int) (sequence % BUDGET_WINDOW)] = true;
+            windowHedges++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the delay after which a hedge is sent.
+     *
+     * @return The delay, empty if it cannot be determined yet.
+     */
+    synchronized Optional<Duration> hedgeDelay() {
+        if (!fixedDelay.isZero())
+            return Optional.of(fixedDelay);
+
+        if (latencyCount < MIN_LATENCY_SAMPLES)
+            return Optional.empty();
+
+        long[] samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+        Arrays.sort(samples);
+        int index = (int) Math.min(samples.length - 1, Math.ceil(percentile * samples.length) - 1);
+        Duration observed = Duration.ofNanos(samples[Math.max(0, index)]);
+        return Optional.of(observed.compareTo(minDelay) < 0 ? minDelay : observed);
+    }
+
+    synchronized void recordLatency(long nanos) {
+        latencies[latencyCount % LATENCY_SAMPLES] = nanos;
+        latencyCount++;
+    }
+
+    private static ChatResponse unwrap(Future<ChatResponse> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
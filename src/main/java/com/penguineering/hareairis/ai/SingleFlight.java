@@ -0,0 +1,85 @@
+package com.penguineering.hareairis.ai;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls with the same key.
+ *
+ * <p>The first caller for a key executes the call, all callers arriving with the same key while this call is in
+ * flight wait for its outcome instead of executing the call again. Results are not kept after the call is done.</p>
+ *
+ * @param <K> The type of the key.
+ * @param <V> The type of the result.
+ */
+public class SingleFlight<K, V> {
+    /**
+     * The outcome of a call.
+     *
+     * @param value  The result of the call.
+     * @param shared True if the result has been shared from a call of another caller.
+     * @param <V>    The type of the result.
+     */
+    public record Outcome<V>(V value, boolean shared) {
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the call, unless a call with the same key is already in flight.
+     *
+     * <p>If the call in flight has been interrupted, the waiting caller executes the call itself, as the interruption
+     * only applies to the other caller's thread.</p>
+     *
+     * @param key  The key identifying calls with the same result.
+     * @param call The call to execute.
+     * @return The outcome of the call.
+     * @throws Exception            If the call throws an exception, this is passed on to all waiting callers.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public Outcome<V> execute(K key, Callable<V> call) throws Exception {
+        while (true) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+            if (Objects.isNull(existing))
+                return new Outcome<>(lead(key, future, call), false);
+
+            try {
+                return new Outcome<>(existing.get(), true);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException)
+                    continue;
+                if (e.getCause() instanceof Exception cause)
+                    throw cause;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of calls currently in flight.
+     *
+     * @return The number of calls in flight.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V lead(K key, CompletableFuture<V> future, Callable<V> call) throws Exception {
+        try {
+            V value = call.call();
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.penguineering.hareairis.ai;
+
+import com.azure.core.http.*;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.core.http.policy.HttpPipelinePosition;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * HTTP pipeline policy to propagate the current trace context to the OpenAI service.
+ *
+ * <p>Injects the W3C <code>traceparent</code> and <code>tracestate</code> headers of the current span into the
+ * outgoing request, so that the upstream call shows up as part of the trace started by the chat request.</p>
+ */
+public class TraceContextPolicy implements HttpPipelinePolicy {
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    public TraceContextPolicy(Tracer tracer, Propagator propagator) {
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    @Override
+    public Mono<HttpResponse> process(HttpPipelineCallContext context, HttpPipelineNextPolicy next) {
+        inject(context.getHttpRequest());
+        return next.process();
+    }
+
+    @Override
+    public HttpResponse processSync(HttpPipelineCallContext context, HttpPipelineNextSyncPolicy next) {
+        inject(context.getHttpRequest());
+        return next.processSync();
+    }
+
+    /**
+     * Runs once per call on the calling thread, before any retry policy hands off to another thread.
+     *
+     * @return The pipeline position of this policy.
+     */
+    @Override
+    public HttpPipelinePosition getPipelinePosition() {
+        return HttpPipelinePosition.PER_CALL;
+    }
+
+    private void inject(HttpRequest request) {
+        TraceContext traceContext = tracer.currentTraceContext().context();
+        if (Objects.isNull(traceContext))
+            return;
+
+        propagator.inject(traceContext, request,
+                (carrier, key, value) -> carrier.setHeader(HttpHeaderName.fromString(key), value));
+    }
+}
@@ -0,0 +1,60 @@
+package com.penguineering.hareairis.ai;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Opens connections to the AI service at startup.
+ *
+ * <p>The warm-up runs while the application context is initialized, i.e. before the listener containers start
+ * consuming, so that the first requests do not pay for connection and TLS setup. The responses are irrelevant, any
+ * answer of the endpoint leaves an established connection in the pool. The response bodies are read to the end, as a
+ * response closed early disposes its connection instead of releasing it to the pool. Failures are logged, but do not
+ * prevent the startup.</p>
+ */
+@Component
+public class UpstreamConnectionWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamConnectionWarmer.class);
+    private final HttpClient httpClient;
+    private final String endpoint;
+    private final int connections;
+    private final Duration timeout;
+
+    public UpstreamConnectionWarmer(HttpClient httpClient,
+                                    @Value("${spring.ai.azure.openai.endpoint}") String endpoint,
+                                    @Value("${hareairis.upstream.warmup-connections}") int connections,
+                                    @Value("${hareairis.upstream.warmup-timeout}") Duration timeout) {
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+        this.connections = connections;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        if (connections < 1)
+            return;
+
+        long start = System.nanoTime();
+        try {
+            Flux.range(0, connections)
+                    .flatMap(i -> httpClient.send(new HttpRequest(HttpMethod.GET, endpoint))
+                            .flatMap(response -> response.getBody().then()), connections)
+                    .then()
+                    .block(timeout);
+            logger.info("Opened {} connections to {} in {} ms", connections, endpoint,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (Exception e) {
+            logger.warn("Failed to warm up connections to {}: {}", endpoint, e.getMessage());
+        }
+    }
+}
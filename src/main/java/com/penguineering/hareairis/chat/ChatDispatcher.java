@@ -0,0 +1,286 @@
+package com.penguineering.hareairis.chat;
+
+import com.penguineering.hareairis.ai.AIChatService;
+import com.penguineering.hareairis.ai.ChatRequestCoalescer;
+import com.penguineering.hareairis.ai.DeploymentRouter;
+import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.ai.RequestHedger;
+import com.penguineering.hareairis.ai.SingleFlight;
+import com.penguineering.hareairis.jfr.UpstreamCallEvent;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatMetadata;
+import com.penguineering.hareairis.model.ChatRequest;
+import com.penguineering.hareairis.model.ChatResponse;
+import com.penguineering.hareairis.rmq.RateLimitGate;
+import com.penguineering.hareairis.rmq.RateLimitGates;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dispatches chat requests to the AI service.
+ *
+ * <p>The dispatcher is shared by the RabbitMQ and the HTTP interface.</p>
+ *
+ * <p>The deployment for each request is selected by the DeploymentRouter. All chat requests for a deployment pass
+ * the same rate limit gate, regardless of whether they arrived via RabbitMQ or HTTP, so that they compete for the
+ * same quota.</p>
+ */
+@Component
+public class ChatDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ChatDispatcher.class);
+    private final AIChatService aiChatService;
+    private final RateLimitGates rateLimitGates;
+    private final DeploymentRouter deploymentRouter;
+    private final ObservationRegistry observationRegistry;
+    private final ChatRequestCoalescer coalescer;
+    private final RequestHedger requestHedger;
+
+    public ChatDispatcher(AIChatService aiChatService,
+                          RateLimitGates rateLimitGates,
+                          DeploymentRouter deploymentRouter,
+                          ObservationRegistry observationRegistry,
+                          ChatRequestCoalescer coalescer,
+                          RequestHedger requestHedger) {
+        this.aiChatService = aiChatService;
+        this.rateLimitGates = rateLimitGates;
+        this.deploymentRouter = deploymentRouter;
+        this.observationRegistry = observationRegistry;
+        this.coalescer = coalescer;
+        this.requestHedger = requestHedger;
+    }
+
+    /**
+     * Dispatches a chat request.
+     *
+     * @param chatRequest The chat request.
+     * @param timing      The timing of the request.
+     * @return The chat response, including the metadata.
+     * @throws Exception            If the chat request fails.
+     * @throws InterruptedException If the thread is interrupted while waiting for the rate limit.
+     */
+    public ChatResponse dispatch(ChatRequest chatRequest, RequestTiming timing) throws Exception {
+        Optional<String> deployment = deploymentRouter.route(chatRequest);
+        RateLimitGate rateLimitGate = rateLimitGates.forDeployment(deployment);
+
+        SingleFlight.Outcome<ChatResponse> outcome = coalescer.call(chatRequest, () -> Observation
+                .createNotStarted("hareairis.chat.gate", observationRegistry)
+                .observeChecked(() -> timing.gate(() -> rateLimitGate.callWithRateLimit(
+                        () -> timing.upstream(() -> Observation
+                                .createNotStarted("hareairis.chat.upstream", observationRegistry)
+                                .observeChecked(() -> callUpstream(chatRequest, deployment, rateLimitGate)))))));
+
+        ChatResponse result = outcome.value();
+        ChatMetadata metadata = result.getMetadata();
+        if (outcome.shared()) {
+            logger.info("Chat request has been coalesced with an identical request in flight.");
+            // the upstream call has been made for another request, its timing does not apply to this one
+            metadata = (Objects.isNull(metadata) ? ChatMetadata.builder() : metadata.toBuilder())
+                    .coalesced(true)
+                    .upstreamLatencyMs(null)
+                    .hedged(null)
+                    .build();
+        }
+
+        return result.toBuilder()
+                .metadata(timing.applyTo(metadata))
+                .build();
+    }
+
+    /**
+     * Calls the AI service, hedged unless the request belongs to a conversation.
+     *
+     * <p>Conversations are not hedged, as a late completion of the cancelled call would add its turn as well.</p>
+     *
+     * <p>The call is recorded as an {@link UpstreamCallEvent}.</p>
+     *
+     * @param rateLimitGate The gate of the deployment, which the calling thread has passed already.
+     */
+    private ChatResponse callUpstream(ChatRequest chatRequest, Optional<String> deployment,
+                                      RateLimitGate rateLimitGate) throws Exception {
+        UpstreamCallEvent event = new UpstreamCallEvent();
+        event.begin();
+        event.deployment = deployment.orElse(null);
+        try {
+            ChatResponse response = Objects.nonNull(chatRequest.getConversationId())
+                    ? aiChatService.handleChatRequest(chatRequest, deployment)
+                    : requestHedger.call(deployment, estimateInputTokens(chatRequest),
+                            d -> callHedgeable(chatRequest, d, rateLimitGate));
+
+            event.status = 200;
+            event.inputTokens = response.getInputTokens();
+            event.outputTokens = response.getOutputTokens();
+            Optional.ofNullable(response.getMetadata()).ifPresent(metadata -> {
+                event.deployment = metadata.getDeployment();
+                event.hedged = Boolean.TRUE.equals(metadata.getHedged());
+            });
+            return response;
+        } catch (ChatException e) {
+            event.status = e.getCode();
+            throw e;
+        } catch (Exception e) {
+            event.status = ChatException.Code.CODE_INTERNAL_SERVER_ERROR.getCode();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.correlationId = CorrelationId.current().orElse(null);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Roughly estimates the input tokens of a request without history, assuming four characters per token.
+     */
+    private static int estimateInputTokens(ChatRequest chatRequest) {
+        int chars = Optional.ofNullable(chatRequest.getSystemMessage()).map(String::length).orElse(0)
+                + Optional.ofNullable(chatRequest.getPrompt()).map(String::length).orElse(0);
+        return (chars + 3) / 4;
+    }
+
+    /**
+     * Calls the AI service for the primary or the hedge call.
+     *
+     * <p>A hedge to another deployment passes the gate of that deployment, so that it respects the rate limit there.
+     * A call to the deployment of the primary gate must not wait for the gate, which is held by the primary call.
+     * Rate limit errors are registered with the gate of the called deployment in both cases.</p>
+     */
+    private ChatResponse callHedgeable(ChatRequest chatRequest, Optional<String> deployment,
+                                       RateLimitGate primaryGate) {
+        RateLimitGate gate = rateLimitGates.forDeployment(deployment);
+        try {
+            if (gate == primaryGate)
+                return aiChatService.handleChatRequest(chatRequest, deployment);
+
+            return gate.waitAndExecute(() -> aiChatService.handleChatRequest(chatRequest, deployment));
+        } catch (RateLimitException e) {
+            gate.registerRateLimitException(e);
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            // restore the interrupt flag
+            Thread.currentThread().interrupt();
+            throw new ChatException(ChatException.Code.CODE_SERVICE_UNAVAILABLE,
+                    "Interrupted while waiting for the rate limit of the hedge deployment.");
+        } catch (Exception e) {
+            throw new ChatException(e.getMessage());
+        }
+    }
+
+    /**
+     * Dispatches a chat request with a streamed response.
+     *
+     * <p>The rate limit gate is passed on subscription and held until the AI service has answered with the first
+     * signal, so that streamed requests queue with all other requests for the deployment. A rate limit error
+     * before the first fragment is registered with the gate and the call is retried. Rate limiting errors later in
+     * the stream are registered with the gate, but not retried, as parts of the response may have been sent
+     * already.</p>
+     *
+     * <p>The fragments are passed on as they arrive and are not kept. Cancelling the returned stream cancels the call
+     * to the AI service.</p>
+     *
+     * <p>Streamed requests are not coalesced and carry no metadata. The call is recorded as an
+     * {@link UpstreamCallEvent} without token counts.</p>
+     *
+     * <p>Errors, including an InterruptedException if the gate is draining, are signalled by the returned stream.</p>
+     *
+     * <p>The correlation ID of the calling thread is passed on to the thread holding the gate and to the event.</p>
+     *
+     * @param chatRequest The chat request.
+     * @return The stream of response fragments.
+     */
+    public Flux<String> stream(ChatRequest chatRequest) {
+        Optional<String> correlationId = CorrelationId.current();
+
+        return Flux.defer(() -> {
+            Optional<String> deployment = deploymentRouter.route(chatRequest);
+            RateLimitGate rateLimitGate = rateLimitGates.forDeployment(deployment);
+
+            UpstreamCallEvent event = new UpstreamCallEvent();
+            event.begin();
+            event.deployment = deployment.orElse(null);
+            event.correlationId = correlationId.orElse(null);
+            AtomicBoolean started = new AtomicBoolean(false);
+
+            return Flux
+                    .defer(() -> streamAttempt(chatRequest, deployment, rateLimitGate, event, correlationId))
+                    .doOnNext(fragment -> started.set(true))
+                    .retryWhen(Retry.indefinitely().filter(e -> !started.get()
+                            && e instanceof RateLimitException rateLimitException
+                            && rateLimitException.getRetryAfter().isPresent()))
+                    .doOnComplete(() -> event.status = 200)
+                    .doOnError(e -> event.status = e instanceof ChatException chatException
+                            ? chatException.getCode()
+                            : ChatException.Code.CODE_INTERNAL_SERVER_ERROR.getCode())
+                    .doFinally(signal -> commit(event));
+        });
+    }
+
+    /**
+     * Passes the gate and calls the AI service once.
+     *
+     * <p>The gate is held by a thread outside the subscriber's thread, as waiting for the rate limit blocks. It is
+     * released with the first signal of the AI service, or when the stream is cancelled before.</p>
+     */
+    private Flux<String> streamAttempt(ChatRequest chatRequest, Optional<String> deployment,
+                                       RateLimitGate rateLimitGate, UpstreamCallEvent event,
+                                       Optional<String> correlationId) {
+        CompletableFuture<Void> passed = new CompletableFuture<>();
+        CompletableFuture<Void> firstSignal = new CompletableFuture<>();
+        Schedulers.boundedElastic().schedule(() -> {
+            CorrelationId.set(correlationId);
+            try {
+                holdGate(rateLimitGate, passed, firstSignal);
+            } finally {
+                CorrelationId.clear();
+            }
+        });
+
+        return Mono
+                .fromFuture(passed)
+                .thenMany(Flux.defer(() -> {
+                    // the event covers the upstream call only, not the wait at the gate
+                    event.begin();
+                    return aiChatService.streamChatRequest(chatRequest, deployment);
+                }))
+                // registered before the gate is released, so that the next caller waits for the rate limit
+                .doOnError(RateLimitException.class, rateLimitGate::registerRateLimitException)
+                .doOnEach(signal -> firstSignal.complete(null))
+                .doFinally(signal -> firstSignal.complete(null));
+    }
+
+    private static void holdGate(RateLimitGate rateLimitGate,
+                                 CompletableFuture<Void> passed,
+                                 CompletableFuture<Void> firstSignal) {
+        try {
+            rateLimitGate.waitAndExecute(() -> {
+                // not started if the stream has been cancelled while waiting at the gate
+                if (passed.complete(null))
+                    firstSignal.get();
+                return null;
+            });
+        } catch (Exception e) {
+            if (!passed.completeExceptionally(e))
+                logger.warn("Interrupted while holding the rate limit gate for a streamed request.", e);
+        }
+    }
+
+    private static void commit(UpstreamCallEvent event) {
+        event.end();
+        if (event.shouldCommit())
+            event.commit();
+    }
+}
@@ -0,0 +1,46 @@
+package com.penguineering.hareairis.chat;
+
+import org.slf4j.MDC;
+
+import java.util.Optional;
+
+/**
+ * Correlation ID of the request handled by the current thread.
+ *
+ * <p>The ID is kept in the MDC, so that it appears in the log and can be picked up by the JFR events, regardless of
+ * whether the request arrived via RabbitMQ or HTTP.</p>
+ */
+public final class CorrelationId {
+    /**
+     * MDC key of the correlation ID.
+     */
+    public static final String MDC_KEY = "correlationId";
+
+    private CorrelationId() {
+    }
+
+    /**
+     * Returns the correlation ID of the current thread.
+     *
+     * @return The correlation ID, empty if the current thread does not handle a request with a correlation ID.
+     */
+    public static Optional<String> current() {
+        return Optional.ofNullable(MDC.get(MDC_KEY));
+    }
+
+    /**
+     * Sets the correlation ID of the current thread.
+     *
+     * @param correlationId The correlation ID, empty to remove it.
+     */
+    public static void set(Optional<String> correlationId) {
+        correlationId.ifPresentOrElse(id -> MDC.put(MDC_KEY, id), CorrelationId::clear);
+    }
+
+    /**
+     * Removes the correlation ID from the current thread.
+     */
+    public static void clear() {
+        MDC.remove(MDC_KEY);
+    }
+}
@@ -0,0 +1,100 @@
+package com.penguineering.hareairis.chat;
+
+import com.penguineering.hareairis.model.ChatMetadata;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Collects the timing of a single request on its way through the bridge.
+ *
+ * <p>The gated call and every upstream attempt are wrapped by this class. The time spent at the rate limit gate is
+ * the time within the gate that was not spent on upstream calls.</p>
+ *
+ * <p>Instances are meant to be used by the thread handling the request only.</p>
+ */
+public class RequestTiming {
+    private final Long queueTimeMs;
+    private Long gateNanos = null;
+    private long upstreamNanos = 0;
+    private int attempts = 0;
+
+    /**
+     * Creates a new request timing.
+     *
+     * @param enqueued The optional point in time when the request has been issued.
+     */
+    public RequestTiming(Optional<Instant> enqueued) {
+        this.queueTimeMs = enqueued
+                .map(t -> Duration.between(t, Instant.now()).toMillis())
+                .map(ms -> Math.max(0, ms))
+                .orElse(null);
+    }
+
+    /**
+     * Returns the time the request has spent in the queue.
+     *
+     * @return The queue time in milliseconds, empty if the issue time of the request is unknown.
+     */
+    public Optional<Long> getQueueTimeMs() {
+        return Optional.ofNullable(queueTimeMs);
+    }
+
+    /**
+     * Executes the gated call and records its duration.
+     *
+     * @param gatedCall The call passing the rate limit gate.
+     * @param <T>       The type of the result.
+     * @return The result of the gated call.
+     * @throws Exception If the gated call throws an exception.
+     */
+    public <T> T gate(Callable<T> gatedCall) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return gatedCall.call();
+        } finally {
+            gateNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Executes an upstream attempt and records its duration.
+     *
+     * @param upstreamCall The call to the AI service.
+     * @param <T>          The type of the result.
+     * @return The result of the upstream call.
+     * @throws Exception If the upstream call throws an exception.
+     */
+    public <T> T upstream(Callable<T> upstreamCall) throws Exception {
+        attempts++;
+        long start = System.nanoTime();
+        try {
+            return upstreamCall.call();
+        } finally {
+            upstreamNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Adds the recorded timing to the metadata.
+     *
+     * @param metadata The metadata provided by the AI service, may be null.
+     * @return The metadata with the recorded timing.
+     */
+    public ChatMetadata applyTo(ChatMetadata metadata) {
+        ChatMetadata.ChatMetadataBuilder builder = Objects.isNull(metadata)
+                ? ChatMetadata.builder()
+                : metadata.toBuilder();
+
+        builder.queueTimeMs(queueTimeMs);
+        if (Objects.nonNull(gateNanos))
+            builder.gateWaitMs(Duration.ofNanos(Math.max(0, gateNanos - upstreamNanos)).toMillis());
+        if (attempts > 0)
+            builder.retryCount(attempts - 1);
+
+        return builder.build();
+    }
+}
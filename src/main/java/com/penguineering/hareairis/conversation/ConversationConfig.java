@@ -0,0 +1,32 @@
+package com.penguineering.hareairis.conversation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ConversationConfig {
+
+    @Value("${hareairis.conversation.max-conversations}")
+    private int maxConversations;
+
+    @Value("${hareairis.conversation.max-turns}")
+    private int maxTurns;
+
+    @Value("${hareairis.conversation.ttl}")
+    private Duration ttl;
+
+    /**
+     * Provides the in-memory conversation store, unless another store implementation is configured.
+     *
+     * @return The conversation store.
+     */
+    @Bean
+    @ConditionalOnMissingBean(ConversationStore.class)
+    public ConversationStore conversationStore() {
+        return new InMemoryConversationStore(maxConversations, maxTurns, ttl);
+    }
+}
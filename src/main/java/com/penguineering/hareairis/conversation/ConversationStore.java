@@ -0,0 +1,31 @@
+package com.penguineering.hareairis.conversation;
+
+import java.util.List;
+
+/**
+ * Store for the prior turns of a conversation.
+ *
+ * <p>Implementations decide on their own how many turns they keep and when a conversation expires.</p>
+ *
+ * <p>Reading the turns and adding a turn are separate steps. If two requests of the same conversation are processed
+ * concurrently, both are answered on the same prior turns and neither sees the turn of the other one, while both turns
+ * are added afterwards. Clients are expected to wait for a response before sending the next turn of a
+ * conversation.</p>
+ */
+public interface ConversationStore {
+    /**
+     * Returns the turns of a conversation, oldest first.
+     *
+     * @param conversationId The conversation ID.
+     * @return The known turns, an empty list if the conversation is unknown or expired.
+     */
+    List<ConversationTurn> getTurns(String conversationId);
+
+    /**
+     * Adds a turn to the end of a conversation, starting the conversation if it is unknown.
+     *
+     * @param conversationId The conversation ID.
+     * @param turn           The turn to add.
+     */
+    void addTurn(String conversationId, ConversationTurn turn);
+}
@@ -0,0 +1,10 @@
+package com.penguineering.hareairis.conversation;
+
+/**
+ * A single turn of a conversation.
+ *
+ * @param prompt   The user prompt of this turn.
+ * @param response The response of the AI service.
+ */
+public record ConversationTurn(String prompt, String response) {
+}
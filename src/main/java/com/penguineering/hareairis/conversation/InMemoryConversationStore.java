@@ -0,0 +1,97 @@
+package com.penguineering.hareairis.conversation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Conversation store keeping the conversations in memory.
+ *
+ * <p>The store is bounded in three ways: Only the latest turns of each conversation are kept, conversations that have
+ * not been used within the time-to-live expire, and the least recently used conversation is evicted once the maximum
+ * number of conversations is exceeded.</p>
+ */
+public class InMemoryConversationStore implements ConversationStore {
+    private static class Conversation {
+        private final Deque<ConversationTurn> turns = new ArrayDeque<>();
+        private Instant lastAccess;
+    }
+
+    private final int maxTurns;
+    private final Duration ttl;
+    private final Clock clock;
+    private final LinkedHashMap<String, Conversation> conversations;
+
+    /**
+     * Creates a new in-memory conversation store.
+     *
+     * @param maxConversations The maximum number of conversations to keep.
+     * @param maxTurns         The maximum number of turns to keep per conversation.
+     * @param ttl              The time after which an unused conversation expires.
+     */
+    public InMemoryConversationStore(int maxConversations, int maxTurns, Duration ttl) {
+        this(maxConversations, maxTurns, ttl, Clock.systemUTC());
+    }
+
+    InMemoryConversationStore(int maxConversations, int maxTurns, Duration ttl, Clock clock) {
+        if (maxConversations < 1 || maxTurns < 1)
+            throw new IllegalArgumentException("Conversation store limits must be positive.");
+
+        this.maxTurns = maxTurns;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                return size() > maxConversations;
+            }
+        };
+    }
+
+    @Override
+    public synchronized List<ConversationTurn> getTurns(String conversationId) {
+        Conversation conversation = conversations.get(conversationId);
+        if (Objects.isNull(conversation))
+            return List.of();
+
+        if (!isAlive(conversation)) {
+            conversations.remove(conversationId);
+            return List.of();
+        }
+
+        // reading counts as use, this keeps the access order in line with lastAccess for expire()
+        conversation.lastAccess = clock.instant();
+        return List.copyOf(conversation.turns);
+    }
+
+    @Override
+    public synchronized void addTurn(String conversationId, ConversationTurn turn) {
+        Conversation conversation = conversations.get(conversationId);
+        if (Objects.isNull(conversation) || !isAlive(conversation)) {
+            conversation = new Conversation();
+            conversations.put(conversationId, conversation);
+        }
+
+        conversation.turns.addLast(turn);
+        while (conversation.turns.size() > maxTurns)
+            conversation.turns.removeFirst();
+        conversation.lastAccess = clock.instant();
+
+        expire();
+    }
+
+    private boolean isAlive(Conversation conversation) {
+        return conversation.lastAccess.plus(ttl).isAfter(clock.instant());
+    }
+
+    private void expire() {
+        // access order: the least recently used conversations come first
+        Iterator<Conversation> it = conversations.values().iterator();
+        while (it.hasNext())
+            if (isAlive(it.next()))
+                break;
+            else
+                it.remove();
+    }
+}
@@ -0,0 +1,189 @@
+package com.penguineering.hareairis.http;
+
+import com.penguineering.hareairis.chat.ChatDispatcher;
+import com.penguineering.hareairis.chat.CorrelationId;
+import com.penguineering.hareairis.chat.RequestTiming;
+import com.penguineering.hareairis.model.ChatError;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatRequest;
+import com.penguineering.hareairis.model.ChatResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Handles chat requests via HTTP.
+ *
+ * <p>Provides the same chat function as the RabbitMQ interface for clients that need a direct request/response
+ * round trip. Requests share the rate limit gate with the requests from RabbitMQ.</p>
+ *
+ * <p>The correlation ID is taken from the <code>X-Correlation-ID</code> header or generated, kept in the MDC while the
+ * request is handled and returned in the same header.</p>
+ */
+@RestController
+@RequestMapping("/chat")
+public class ChatController {
+    /**
+     * Header carrying the correlation ID of a request.
+     */
+    public static final String CORRELATION_ID_HEADER = "X-Correlation-ID";
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
+    // an interrupted request is due to a shutdown, another instance can take it right away
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private final ChatDispatcher chatDispatcher;
+
+    public ChatController(ChatDispatcher chatDispatcher) {
+        this.chatDispatcher = chatDispatcher;
+    }
+
+    /**
+     * Handles a chat request.
+     *
+     * <p>Waiting for the rate limit blocks, so the request is handled outside the event loop.</p>
+     *
+     * @param chatRequest   The chat request.
+     * @param correlationId The optional correlation ID of the request.
+     * @param response      The HTTP response to return the correlation ID.
+     * @return The chat response.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ChatResponse> chat(@RequestBody ChatRequest chatRequest,
+                                   @RequestHeader(name = CORRELATION_ID_HEADER, required = false) String correlationId,
+                                   ServerHttpResponse response) {
+        String id = correlationId(correlationId, response);
+        return Mono
+                .fromCallable(() -> {
+                    CorrelationId.set(Optional.of(id));
+                    try {
+                        return chatDispatcher.dispatch(chatRequest, new RequestTiming(Optional.empty()));
+                    } catch (InterruptedException e) {
+                        // restore the interrupt flag
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    } finally {
+                        CorrelationId.clear();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Handles a chat request with a streamed response.
+     *
+     * <p>The response fragments are sent as server-sent events. An error after the stream has started is sent as
+     * <code>error</code> event with a ChatError object.</p>
+     *
+     * @param chatRequest   The chat request.
+     * @param correlationId The optional correlation ID of the request.
+     * @param response      The HTTP response to return the correlation ID.
+     * @return The stream of response fragments.
+     */
+    @PostMapping(path = "/stream", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(@RequestBody ChatRequest chatRequest,
+                                                @RequestHeader(name = CORRELATION_ID_HEADER, required = false)
+                                                String correlationId,
+                                                ServerHttpResponse response) {
+        // the dispatcher picks up the correlation ID when the stream is created
+        CorrelationId.set(Optional.of(correlationId(correlationId, response)));
+        Flux<String> fragments;
+        try {
+            fragments = chatDispatcher.stream(chatRequest);
+        } finally {
+            CorrelationId.clear();
+        }
+
+        return fragments
+                .map(fragment -> ServerSentEvent.<Object>builder(fragment).build())
+                .onErrorResume(e -> {
+                    logger.info("Error on streamed chat request", e);
+                    return Mono.just(ServerSentEvent.<Object>builder(new ChatError(toChatException(e)))
+                            .event("error")
+                            .build());
+                });
+    }
+
+    /**
+     * Renders a chat exception as ChatError object with the matching HTTP status.
+     *
+     * @param e The chat exception.
+     * @return The error response.
+     */
+    @ExceptionHandler(ChatException.class)
+    public ResponseEntity<ChatError> handleChatException(ChatException e) {
+        logger.info("Error on chat request", e);
+        return ResponseEntity
+                .status(e.getCode())
+                .body(new ChatError(e));
+    }
+
+    /**
+     * Renders an interruption, e.g. while the rate limit gate is draining on shutdown, as service unavailable.
+     *
+     * @param e The interrupted exception.
+     * @return The error response with a <code>Retry-After</code> header.
+     */
+    @ExceptionHandler(InterruptedException.class)
+    public ResponseEntity<ChatError> handleInterruptedException(InterruptedException e) {
+        logger.info("Chat request has been interrupted", e);
+        ChatException chatException = toChatException(e);
+        return ResponseEntity
+                .status(chatException.getCode())
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(new ChatError(chatException));
+    }
+
+    /**
+     * Renders any other exception as ChatError object, so that clients always receive the same error format.
+     *
+     * <p>Errors of the web framework, e.g. an unreadable request body, keep their HTTP status.</p>
+     *
+     * @param e The exception.
+     * @return The error response.
+     */
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ChatError> handleException(Exception e) {
+        ChatException chatException = toChatException(e);
+        if (chatException.is5xxServerError())
+            logger.error("Error on chat request", e);
+        else
+            logger.info("Error on chat request", e);
+        return ResponseEntity
+                .status(chatException.getCode())
+                .body(new ChatError(chatException));
+    }
+
+    /**
+     * Returns the correlation ID of the request, generating one if the client did not provide it.
+     */
+    private static String correlationId(String header, ServerHttpResponse response) {
+        String id = StringUtils.hasText(header) ? header : UUID.randomUUID().toString();
+        response.getHeaders().set(CORRELATION_ID_HEADER, id);
+        return id;
+    }
+
+    private static ChatException toChatException(Throwable e) {
+        if (e instanceof ChatException chatException)
+            return chatException;
+        if (e instanceof InterruptedException)
+            return new ChatException(ChatException.Code.CODE_SERVICE_UNAVAILABLE, "Service is shutting down.");
+        if (e instanceof ErrorResponse errorResponse)
+            return new ChatException(errorResponse.getStatusCode().value(), e.getMessage());
+
+        return new ChatException(e.getMessage());
+    }
+}
@@ -0,0 +1,40 @@
+package com.penguineering.hareairis.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event covering the wait at a rate limit gate.
+ *
+ * <p>The event spans from the arrival at the gate to the start of the protected call.</p>
+ */
+@Name("com.penguineering.hareairis.GateWait")
+@Label("Rate Limit Gate Wait")
+@Description("Wait at a rate limit gate before the upstream call")
+@Category("HareAIris")
+@Enabled(false)
+@StackTrace(false)
+public class GateWaitEvent extends Event {
+    /**
+     * No wait was necessary.
+     */
+    public static final String REASON_NONE = "none";
+    /**
+     * Another caller was passing the gate.
+     */
+    public static final String REASON_CONTENTION = "contention";
+    /**
+     * The gate was closed after a rate limit response.
+     */
+    public static final String REASON_RATE_LIMIT = "rate-limit";
+
+    @Label("Correlation ID")
+    public String correlationId;
+
+    @Label("Back-off Reason")
+    public String reason = REASON_NONE;
+
+    @Label("Rate Limit Wait")
+    @Description("Part of the wait spent until the retry-after time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long rateLimitWait;
+}
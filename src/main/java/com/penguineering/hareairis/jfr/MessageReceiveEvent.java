@@ -0,0 +1,30 @@
+package com.penguineering.hareairis.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event covering the handling of a chat request received from RabbitMQ.
+ *
+ * <p>The event spans from the reception of the message to its acknowledgement.</p>
+ */
+@Name("com.penguineering.hareairis.MessageReceive")
+@Label("Message Receive")
+@Description("Handling of a chat request received from RabbitMQ")
+@Category("HareAIris")
+@Enabled(false)
+@StackTrace(false)
+public class MessageReceiveEvent extends Event {
+    @Label("Correlation ID")
+    public String correlationId;
+
+    @Label("Queue Time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long queueTime = -1;
+
+    @Label("Redelivered")
+    public boolean redelivered;
+
+    @Label("Outcome")
+    @Description("replied, replayed, error, requeued or interrupted")
+    public String outcome;
+}
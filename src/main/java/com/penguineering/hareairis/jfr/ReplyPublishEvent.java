@@ -0,0 +1,24 @@
+package com.penguineering.hareairis.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event covering the publication of a reply or an error to RabbitMQ.
+ */
+@Name("com.penguineering.hareairis.ReplyPublish")
+@Label("Reply Publish")
+@Description("Publication of a reply or an error to RabbitMQ")
+@Category("HareAIris")
+@Enabled(false)
+@StackTrace(false)
+public class ReplyPublishEvent extends Event {
+    @Label("Correlation ID")
+    public String correlationId;
+
+    @Label("Routing Key")
+    public String routingKey;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+}
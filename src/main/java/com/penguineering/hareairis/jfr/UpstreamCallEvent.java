@@ -0,0 +1,35 @@
+package com.penguineering.hareairis.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event covering a chat call to the AI service.
+ *
+ * <p>A hedged call is recorded as one event.</p>
+ */
+@Name("com.penguineering.hareairis.UpstreamCall")
+@Label("Upstream Call")
+@Description("Chat call to the AI service")
+@Category("HareAIris")
+@Enabled(false)
+@StackTrace(false)
+public class UpstreamCallEvent extends Event {
+    @Label("Correlation ID")
+    public String correlationId;
+
+    @Label("Deployment")
+    public String deployment;
+
+    @Label("Status")
+    @Description("HTTP status of the call, 200 on success")
+    public int status;
+
+    @Label("Input Tokens")
+    public int inputTokens;
+
+    @Label("Output Tokens")
+    public int outputTokens;
+
+    @Label("Hedged")
+    public boolean hedged;
+}
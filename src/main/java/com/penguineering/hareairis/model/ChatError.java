@@ -1,11 +1,14 @@
 package com.penguineering.hareairis.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 /**
  * Represents a chat error.
  *
@@ -28,13 +31,39 @@ public class ChatError {
     @JsonProperty("message")
     private String message;
 
+    /**
+     * The optional point in time when the service can be called again.
+     */
+    @JsonProperty("retry-after")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant retryAfter;
+
+    /**
+     * The optional timing and usage metadata.
+     */
+    @JsonProperty("metadata")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ChatMetadata metadata;
+
     /**
      * Creates a new chat error from a chat exception.
      *
      * @param ex The chat exception.
      */
     public ChatError(ChatException ex) {
+        this(ex, null);
+    }
+
+    /**
+     * Creates a new chat error from a chat exception with metadata.
+     *
+     * @param ex       The chat exception.
+     * @param metadata The optional metadata, may be null.
+     */
+    public ChatError(ChatException ex, ChatMetadata metadata) {
         this.code = ex.getCode();
         this.message = ex.getMessage();
+        this.retryAfter = ex.getRetryAfter().orElse(null);
+        this.metadata = metadata;
     }
 }
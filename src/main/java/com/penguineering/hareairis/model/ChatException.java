@@ -5,6 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+import java.util.Optional;
+
 public class ChatException extends RuntimeException {
     @Getter
     @AllArgsConstructor
@@ -12,6 +15,7 @@ public class ChatException extends RuntimeException {
         CODE_BAD_REQUEST(400),
         CODE_TOO_MANY_REQUESTS(429),
         CODE_INTERNAL_SERVER_ERROR(500),
+        CODE_SERVICE_UNAVAILABLE(503),
         CODE_GATEWAY_TIMEOUT(504);
 
         private final int code;
@@ -35,7 +39,20 @@ public class ChatException extends RuntimeException {
         this.code = code;
     }
 
+    public boolean is4xxClientError() {
+        return code >= 400 && code < 500;
+    }
+
     public boolean is5xxServerError() {
         return code >= 500 && code < 600;
     }
+
+    /**
+     * Returns the optional point in time to hint when the service can be called again.
+     *
+     * @return The optional retry after time, empty unless overridden.
+     */
+    public Optional<Instant> getRetryAfter() {
+        return Optional.empty();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.penguineering.hareairis.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * Represents timing and usage metadata of a chat request.
+ *
+ * <p>All fields are optional and only present if they could be determined for the request.</p>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatMetadata {
+    /**
+     * The time in milliseconds between the timestamp set by the producer and the start of processing.
+     */
+    @JsonProperty("queue-time-ms")
+    private Long queueTimeMs;
+
+    /**
+     * The time in milliseconds spent waiting at the rate limit gate.
+     */
+    @JsonProperty("gate-wait-ms")
+    private Long gateWaitMs;
+
+    /**
+     * The time in milliseconds the AI service took to answer.
+     */
+    @JsonProperty("upstream-latency-ms")
+    private Long upstreamLatencyMs;
+
+    /**
+     * The endpoint of the AI service.
+     */
+    @JsonProperty("endpoint")
+    private String endpoint;
+
+    /**
+     * The model deployment that answered the request.
+     */
+    @JsonProperty("deployment")
+    private String deployment;
+
+    /**
+     * The reason why the AI service stopped generating.
+     */
+    @JsonProperty("finish-reason")
+    private String finishReason;
+
+    /**
+     * The number of retries after rate limiting.
+     */
+    @JsonProperty("retry-count")
+    private Integer retryCount;
+
+    /**
+     * True if the response has been shared from an identical request that was in flight at the same time.
+     */
+    @JsonProperty("coalesced")
+    private Boolean coalesced;
+
+    /**
+     * True if a duplicate call has been sent to cut the latency of a slow upstream call.
+     */
+    @JsonProperty("hedged")
+    private Boolean hedged;
+}
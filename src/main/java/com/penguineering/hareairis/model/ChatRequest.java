@@ -28,6 +28,30 @@ public class ChatRequest {
     @JsonProperty("prompt")
     private String prompt = "";
 
+    /**
+     * The optional conversation ID.
+     *
+     * <p>If set, the prior turns of this conversation are sent along with the prompt and the new turn is added to
+     * the conversation, so that only the new user turn needs to be sent.</p>
+     */
+    @JsonProperty("conversation-id")
+    private String conversationId = null;
+
+    /**
+     * The optional model deployment to use.
+     *
+     * <p>If not set, the deployment is selected by the routing policy.</p>
+     */
+    @JsonProperty("deployment")
+    private String deployment = null;
+
+    /**
+     * The optional latency class, e.g. <code>interactive</code> or <code>batch</code>, as input for the routing
+     * policy.
+     */
+    @JsonProperty("latency-class")
+    private String latencyClass = null;
+
     /**
      * The maximum number of tokens to generate.
      */
@@ -1,6 +1,7 @@
 package com.penguineering.hareairis.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
@@ -32,4 +33,11 @@ public class ChatResponse {
      */
     @JsonProperty("output-tokens")
     private int outputTokens;
+
+    /**
+     * The optional timing and usage metadata.
+     */
+    @JsonProperty("metadata")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ChatMetadata metadata;
 }
@@ -0,0 +1,24 @@
+package com.penguineering.hareairis.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents an embedding request.
+ *
+ * <p>Represents a request for the embedding of a single text.</p>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EmbeddingRequest {
+    /**
+     * The text to embed.
+     */
+    @JsonProperty("input")
+    private String input = "";
+}
@@ -0,0 +1,37 @@
+package com.penguineering.hareairis.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * Represents an embedding response.
+ *
+ * <p>Represents an embedding response that can be sent back to the client.</p>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EmbeddingResponse {
+    /**
+     * The embedding vector.
+     */
+    @JsonProperty("embedding")
+    private float[] embedding;
+
+    /**
+     * The number of input tokens.
+     *
+     * <p>The AI service only reports the tokens of a whole batch, this is the share of the batch by input length.</p>
+     */
+    @JsonProperty("input-tokens")
+    private int inputTokens;
+
+    /**
+     * The number of requests that have been sent to the AI service in the same call.
+     */
+    @JsonProperty("batch-size")
+    private int batchSize;
+}
@@ -1,18 +1,20 @@
 package com.penguineering.hareairis.rmq;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.penguineering.hareairis.ai.AIChatService;
-import com.penguineering.hareairis.model.ChatError;
+import com.penguineering.hareairis.chat.ChatDispatcher;
+import com.penguineering.hareairis.chat.CorrelationId;
+import com.penguineering.hareairis.chat.RequestTiming;
+import com.penguineering.hareairis.jfr.MessageReceiveEvent;
 import com.penguineering.hareairis.model.ChatException;
 import com.penguineering.hareairis.model.ChatRequest;
 import com.penguineering.hareairis.model.ChatResponse;
 import com.rabbitmq.client.Channel;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
 import org.springframework.stereotype.Component;
 
@@ -27,32 +29,48 @@ import java.util.Optional;
  */
 @Component
 public class ChatRequestHandler implements ChannelAwareMessageListener {
-
     private static final Logger logger = LoggerFactory.getLogger(ChatRequestHandler.class);
     private final ObjectMapper objectMapper;
-    private final AIChatService aiChatService;
-    private final RabbitTemplate rabbitTemplate;
-    private final RateLimitGate rateLimitGate;
+    private final ChatDispatcher chatDispatcher;
+    private final ReplyPublisher replyPublisher;
+    private final ObservationRegistry observationRegistry;
+    private final CompletedResultStore completedResultStore;
 
     public ChatRequestHandler(ObjectMapper objectMapper,
-                              AIChatService aiChatService,
-                              RabbitTemplate rabbitTemplate,
-                              RateLimitGate rateLimitGate) {
+                              ChatDispatcher chatDispatcher,
+                              ReplyPublisher replyPublisher,
+                              ObservationRegistry observationRegistry,
+                              CompletedResultStore completedResultStore) {
         this.objectMapper = objectMapper;
-        this.aiChatService = aiChatService;
-        this.rabbitTemplate = rabbitTemplate;
-        this.rateLimitGate = rateLimitGate;
+        this.chatDispatcher = chatDispatcher;
+        this.replyPublisher = replyPublisher;
+        this.observationRegistry = observationRegistry;
+        this.completedResultStore = completedResultStore;
     }
 
     /**
      * Handles a chat request.
      *
-     * <p>Handles a chat request, processes it using the AiChatService and sends the response back to the replyTo queue.</p>
+     * <p>Handles a chat request, processes it using the ChatDispatcher and sends the response back to the replyTo queue.</p>
+     *
+     * <p>The trace context from the <code>traceparent</code> and <code>tracestate</code> headers is picked up by the
+     * listener container, the individual processing steps are recorded as child spans.</p>
+     *
+     * <p>Replies are recorded by the <code>idempotency-key</code> header or the <code>message_id</code> property,
+     * together with the reply address and the request body. A request with a recorded reply is answered from the
+     * CompletedResultStore without calling the AI service. The store is consulted for redeliveries and for requests
+     * with an explicit idempotency key only, as message IDs may be reused by producers.</p>
+     *
+     * <p>The handling is recorded as a {@link MessageReceiveEvent}. The correlation ID is kept in the MDC while the
+     * request is handled.</p>
      *
      * @param message The chat request message.
      */
     @Override
     public void onMessage(Message message, Channel channel) {
+        MessageReceiveEvent event = new MessageReceiveEvent();
+        event.begin();
+
         long deliveryTag = message.getMessageProperties().getDeliveryTag();
 
         // Extract the correlation ID
@@ -63,6 +81,7 @@ public class ChatRequestHandler implements ChannelAwareMessageListener {
                 id -> logger.info("Received a chat request with Correlation ID: {}", id),
                 () -> logger.warn("Received a chat request without Correlation ID")
         );
+        CorrelationId.set(correlationId);
 
         // Extract the custom error queue header
         Optional<String> errorTo = Optional
@@ -72,8 +91,29 @@ public class ChatRequestHandler implements ChannelAwareMessageListener {
         if (errorTo.isEmpty())
             logger.warn("Error_to header not provided, errors will be logged only!");
 
+        // Extract the key to recognize redelivered requests
+        Optional<String> explicitIdempotencyKey = Optional
+                .ofNullable(message.getMessageProperties())
+                .map(props -> props.getHeader("idempotency-key"))
+                .map(Object::toString);
+        Optional<String> idempotencyKey = explicitIdempotencyKey.or(() -> Optional
+                .ofNullable(message.getMessageProperties())
+                .map(MessageProperties::getMessageId));
+        boolean redelivered = Optional
+                .ofNullable(message.getMessageProperties())
+                .map(MessageProperties::getRedelivered)
+                .orElse(false);
+
+        // the queue time can only be determined if the producer has set the timestamp property
+        RequestTiming timing = new RequestTiming(Optional
+                .ofNullable(message.getMessageProperties())
+                .map(MessageProperties::getTimestamp)
+                .map(java.util.Date::toInstant));
+
         try {
-            ChatRequest chatRequest = deserializeChatRequest(message);
+            ChatRequest chatRequest = Observation
+                    .createNotStarted("hareairis.chat.deserialize", observationRegistry)
+                    .observe(() -> deserializeChatRequest(message));
 
             // Extract the "reply_to" property
             String replyTo = Optional
@@ -82,44 +122,59 @@ public class ChatRequestHandler implements ChannelAwareMessageListener {
                     .orElseThrow(() -> new ChatException(ChatException.Code.CODE_BAD_REQUEST, "Reply_to property is missing"));
             logger.info("Reply-to header: {}", replyTo);
 
-
-            ChatResponse result = rateLimitGate.callWithRateLimit(
-                    () -> aiChatService.handleChatRequest(chatRequest));
+            // Answer requests that have been completed before, e.g. if the ack got lost
+            Optional<String> completed = idempotencyKey
+                    .filter(key -> redelivered || explicitIdempotencyKey.isPresent())
+                    .flatMap(key -> completedResultStore.get(key, replyTo, message.getBody()));
+            if (completed.isPresent()) {
+                logger.info("Chat request has already been completed (redelivered: {}), sending the recorded reply.",
+                        redelivered);
+                replyPublisher.send(completed.get(), replyTo, correlationId);
+                channel.basicAck(deliveryTag, false);
+                event.outcome = "replayed";
+                return;
+            }
+
+            ChatResponse result = chatDispatcher.dispatch(chatRequest, timing);
 
             // Convert ChatResponse to JSON
             String jsonResponse = serializeChatResponse(result);
 
+            // Record the reply before sending, so that it is known if the message is redelivered
+            idempotencyKey.ifPresent(key -> completedResultStore.put(key, replyTo, message.getBody(), jsonResponse));
+
             // Send the response to the replyTo queue
-            send(jsonResponse, replyTo, correlationId);
+            replyPublisher.send(jsonResponse, replyTo, correlationId);
 
             // Acknowledge the message
             channel.basicAck(deliveryTag, false);
+            event.outcome = "replied";
         } catch (InterruptedException e) {
             logger.warn("Interrupted while waiting for rate limit, current message will not be acked and remains in the queue.");
 
             // restore the interrupt flag
             Thread.currentThread().interrupt();
+            event.outcome = "interrupted";
         } catch (Exception e) {
             logger.info("Error on chat request", e);
-            Optional<String> json = serializeChatError(e);
-            errorTo.ifPresentOrElse(
-                    to -> json.ifPresent(
-                            j -> send(j, to, correlationId)),
-                    () -> logger.error("Error on handling chat request!", e)
-            );
+            replyPublisher.sendError(e, timing.applyTo(null), errorTo, correlationId);
 
             doExceptionBasedAck(e, channel, deliveryTag);
+            event.outcome = e instanceof ChatException chatException && chatException.is5xxServerError()
+                    ? "requeued"
+                    : "error";
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.correlationId = correlationId.orElse(null);
+                event.queueTime = timing.getQueueTimeMs().orElse(-1L);
+                event.redelivered = redelivered;
+                event.commit();
+            }
+            CorrelationId.clear();
         }
     }
 
-    private void send(String json, String to, Optional<String> correlationId) {
-        MessageProperties messageProperties = new MessageProperties();
-        correlationId.ifPresent(messageProperties::setCorrelationId);
-        messageProperties.setContentType("application/json");
-        Message responseMessage = new Message(json.getBytes(), messageProperties);
-        rabbitTemplate.send(to, responseMessage);
-    }
-
     private void doExceptionBasedAck(Exception e, Channel channel, long deliveryTag) {
         try {
             if (e instanceof ChatException chatException)
@@ -152,26 +207,4 @@ public class ChatRequestHandler implements ChannelAwareMessageListener {
                     "Failed to serialize chat response: " + e.getMessage());
         }
     }
-
-    private Optional<String> serializeChatError(Exception e) {
-        Optional<ChatException> chatEx = e instanceof ChatException
-                ? Optional.of((ChatException) e)
-                : Optional.of(new ChatException(e.getMessage()));
-
-        try {
-            return chatEx
-                    .map(ChatError::new)
-                    .map(err -> {
-                        try {
-                            return objectMapper.writeValueAsString(err);
-                        } catch (JsonProcessingException ex) {
-                            throw new RuntimeException(ex);
-                        }
-                    });
-            //return objectMapper.writeValueAsString(error).describeConstable();
-        } catch (Exception ex) {
-            logger.error("Failed to serialize error", ex);
-            return Optional.empty();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.penguineering.hareairis.rmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Store for the replies of completed requests.
+ *
+ * <p>If a request is delivered again, e.g. because the pod died before the message could be acknowledged, the reply
+ * can be sent from this store instead of calling the AI service again.</p>
+ *
+ * <p>Replies are stored by the idempotency key, the reply address and the request body together. Idempotency keys are
+ * chosen by the producers, so a key reused by another client or for another request must not match.</p>
+ *
+ * <p>The store keeps the latest replies up to the maximum number of entries. If a directory is configured, the replies
+ * are also written to disk and loaded again on startup, so that they survive a restart. Files are written and deleted
+ * outside the lock of the in-memory index, so that slow disk IO does not hold up the lookups of other consumers.</p>
+ */
+@Component
+public class CompletedResultStore {
+    private static final Logger logger = LoggerFactory.getLogger(CompletedResultStore.class);
+    private static final String SUFFIX = ".json";
+
+    private final Optional<Path> directory;
+    // guarded by the lock on results
+    private final LinkedHashMap<String, String> results;
+    private final List<String> evicted = new ArrayList<>();
+
+    public CompletedResultStore(@Value("${hareairis.idempotency.max-entries}") int maxEntries,
+                                @Value("${hareairis.idempotency.directory}") String directory) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("The completed result store needs at least one entry.");
+
+        this.directory = Optional.ofNullable(directory)
+                .filter(StringUtils::hasText)
+                .map(Path::of);
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() <= maxEntries)
+                    return false;
+
+                evicted.add(eldest.getKey());
+                return true;
+            }
+        };
+
+        this.directory.ifPresent(this::load);
+    }
+
+    /**
+     * Returns the reply of a completed request.
+     *
+     * @param key     The idempotency key of the request.
+     * @param replyTo The reply address of the request.
+     * @param request The request body.
+     * @return The reply, empty if the request is not known as completed.
+     */
+    public Optional<String> get(String key, String replyTo, byte[] request) {
+        String name = fileName(key, replyTo, request);
+        synchronized (results) {
+            return Optional.ofNullable(results.get(name));
+        }
+    }
+
+    /**
+     * Records the reply of a completed request.
+     *
+     * @param key     The idempotency key of the request.
+     * @param replyTo The reply address of the request.
+     * @param request The request body.
+     * @param reply   The reply.
+     */
+    public void put(String key, String replyTo, byte[] request, String reply) {
+        String name = fileName(key, replyTo, request);
+        // written before the entry becomes visible, so that a recorded reply is on disk
+        directory.ifPresent(dir -> writeFile(dir, name, reply));
+
+        List<String> deletions;
+        synchronized (results) {
+            results.put(name, reply);
+            deletions = List.copyOf(evicted);
+            evicted.clear();
+        }
+
+        directory.ifPresent(dir -> deletions.forEach(evictedName -> deleteFile(dir, evictedName)));
+    }
+
+    private void load(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(dir)) {
+                files = stream
+                        .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparing(CompletedResultStore::lastModified))
+                        .toList();
+            }
+            // oldest first, so that the newest results remain when the maximum is exceeded
+            for (Path file : files)
+                results.put(file.getFileName().toString(), Files.readString(file, StandardCharsets.UTF_8));
+            evicted.forEach(name -> deleteFile(dir, name));
+            evicted.clear();
+
+            logger.info("Loaded {} completed results from {}", results.size(), dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load completed results from " + dir, e);
+        }
+    }
+
+    private static void writeFile(Path dir, String name, String reply) {
+        try {
+            Path tmp = dir.resolve(name + ".tmp");
+            Files.writeString(tmp, reply, StandardCharsets.UTF_8);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the in-memory entry still serves redeliveries within this process
+            logger.warn("Failed to persist completed result {}", name, e);
+        }
+    }
+
+    private static void deleteFile(Path dir, String name) {
+        try {
+            Files.deleteIfExists(dir.resolve(name));
+        } catch (IOException e) {
+            logger.warn("Failed to delete completed result {}", name, e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Derives a file name from the scope of the reply, as the key is provided by the client and may contain any
+     * characters.
+     */
+    private static String fileName(String key, String replyTo, byte[] request) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            // length-prefixed, so that the parts cannot be shifted against each other
+            for (byte[] part : List.of(key.getBytes(StandardCharsets.UTF_8),
+                    replyTo.getBytes(StandardCharsets.UTF_8),
+                    request)) {
+                md.update(ByteBuffer.allocate(Integer.BYTES).putInt(part.length).array());
+                md.update(part);
+            }
+            return HexFormat.of().formatHex(md.digest()) + SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
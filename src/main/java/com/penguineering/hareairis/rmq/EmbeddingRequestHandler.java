@@ -0,0 +1,239 @@
+package com.penguineering.hareairis.rmq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.hareairis.ai.AIEmbeddingService;
+import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.EmbeddingRequest;
+import com.penguineering.hareairis.model.EmbeddingResponse;
+import com.rabbitmq.client.Channel;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+/**
+ * Handles embedding requests from RabbitMQ.
+ *
+ * <p>The listener container hands over the requests that arrived within the batch window. They are split into chunks
+ * bounded by the maximum batch size and the estimated token count, and each chunk is sent to the AI service with a
+ * single call. The results are sent back to the replyTo queue of each request.</p>
+ *
+ * <p>Requests with an empty input are rejected before they join a chunk. If a chunk is still rejected as a client
+ * error, e.g. because one input exceeds the token limit of the model, its requests are retried one by one, so that
+ * only the offending request receives the error.</p>
+ *
+ * <p>The calls pass the rate limit gate of the embedding deployment, which is separate from the gates of the chat
+ * deployments.</p>
+ */
+@Component
+public class EmbeddingRequestHandler implements ChannelAwareBatchMessageListener {
+    private record PendingRequest(EmbeddingRequest request,
+                                  String replyTo,
+                                  Optional<String> correlationId,
+                                  Optional<String> errorTo,
+                                  long deliveryTag) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingRequestHandler.class);
+    private final ObjectMapper objectMapper;
+    private final AIEmbeddingService aiEmbeddingService;
+    private final ReplyPublisher replyPublisher;
+    private final RateLimitGate rateLimitGate;
+    private final ObservationRegistry observationRegistry;
+    private final int batchSize;
+    private final int maxBatchTokens;
+
+    public EmbeddingRequestHandler(ObjectMapper objectMapper,
+                                   AIEmbeddingService aiEmbeddingService,
+                                   ReplyPublisher replyPublisher,
+                                   RateLimitGates rateLimitGates,
+                                   @Value("${spring.ai.azure.openai.embedding.options.deployment-name:text-embedding-ada-002}")
+                                   String embeddingDeployment,
+                                   ObservationRegistry observationRegistry,
+                                   @Value("${hareairis.embeddings.batch-size}") int batchSize,
+                                   @Value("${hareairis.embeddings.max-batch-tokens}") int maxBatchTokens) {
+        this.objectMapper = objectMapper;
+        this.aiEmbeddingService = aiEmbeddingService;
+        this.replyPublisher = replyPublisher;
+        this.rateLimitGate = rateLimitGates.forDeployment(Optional.of(embeddingDeployment));
+        this.observationRegistry = observationRegistry;
+        this.batchSize = batchSize;
+        this.maxBatchTokens = maxBatchTokens;
+    }
+
+    /**
+     * Handles a batch of embedding requests.
+     *
+     * @param messages The embedding request messages.
+     * @param channel  The channel to (n)ack the messages.
+     */
+    @Override
+    public void onMessageBatch(List<Message> messages, Channel channel) {
+        logger.info("Received a batch of {} embedding requests", messages.size());
+
+        List<PendingRequest> pending = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            MessageProperties props = message.getMessageProperties();
+            Optional<String> correlationId = Optional.ofNullable(props.getCorrelationId());
+            Optional<String> errorTo = Optional
+                    .ofNullable(props.getHeader("error_to"))
+                    .map(String.class::cast);
+
+            try {
+                EmbeddingRequest request = deserializeEmbeddingRequest(message);
+                String replyTo = Optional
+                        .ofNullable(props.getReplyTo())
+                        .orElseThrow(() -> new ChatException(ChatException.Code.CODE_BAD_REQUEST, "Reply_to property is missing"));
+                if (Objects.isNull(request.getInput()) || request.getInput().isBlank())
+                    throw new ChatException(ChatException.Code.CODE_BAD_REQUEST, "Input is empty");
+
+                pending.add(new PendingRequest(request, replyTo, correlationId, errorTo, props.getDeliveryTag()));
+            } catch (ChatException e) {
+                logger.info("Error on embedding request", e);
+                replyPublisher.sendError(e, null, errorTo, correlationId);
+                ack(channel, props.getDeliveryTag(), false);
+            }
+        }
+
+        for (List<PendingRequest> chunk : chunk(pending, p -> estimateTokens(p.request()), batchSize, maxBatchTokens))
+            if (!handleChunk(chunk, channel))
+                break;
+    }
+
+    /**
+     * Handles a chunk of embedding requests.
+     *
+     * @return false if the thread has been interrupted and the remaining requests should stay in the queue.
+     */
+    private boolean handleChunk(List<PendingRequest> chunk, Channel channel) {
+        List<EmbeddingRequest> requests = chunk.stream().map(PendingRequest::request).toList();
+
+        List<EmbeddingResponse> responses;
+        try {
+            responses = Observation
+                    .createNotStarted("hareairis.embedding.gate", observationRegistry)
+                    .observeChecked(() -> rateLimitGate.callWithRateLimit(
+                            () -> Observation
+                                    .createNotStarted("hareairis.embedding.upstream", observationRegistry)
+                                    .observe(() -> aiEmbeddingService.handleEmbeddingRequests(requests))));
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for rate limit, current messages will not be acked and remain in the queue.");
+
+            // restore the interrupt flag
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ChatException e) {
+            if (chunk.size() > 1 && e.is4xxClientError() && !(e instanceof RateLimitException)) {
+                logger.info("Embedding request batch rejected, retrying the {} requests one by one", chunk.size(), e);
+                for (PendingRequest p : chunk)
+                    if (!handleChunk(List.of(p), channel))
+                        return false;
+                return true;
+            }
+
+            logger.info("Error on embedding request batch", e);
+            chunk.forEach(p -> replyError(p, e, channel));
+            return true;
+        } catch (Exception e) {
+            logger.info("Error on embedding request batch", e);
+            chunk.forEach(p -> replyError(p, e, channel));
+            return true;
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            PendingRequest p = chunk.get(i);
+            try {
+                replyPublisher.send(serializeEmbeddingResponse(responses.get(i)), p.replyTo(), p.correlationId());
+                ack(channel, p.deliveryTag(), false);
+            } catch (Exception e) {
+                logger.info("Error on embedding request", e);
+                replyError(p, e, channel);
+            }
+        }
+
+        return true;
+    }
+
+    private void replyError(PendingRequest p, Exception e, Channel channel) {
+        replyPublisher.sendError(e, null, p.errorTo(), p.correlationId());
+        boolean requeue = e instanceof ChatException chatException && chatException.is5xxServerError();
+        ack(channel, p.deliveryTag(), requeue);
+    }
+
+    /**
+     * Splits the items into chunks, keeping their order.
+     *
+     * <p>A chunk has at most <code>maxItems</code> items, and the weight of its items does not exceed
+     * <code>maxWeight</code>, unless a single item is heavier on its own.</p>
+     */
+    static <T> List<List<T>> chunk(List<T> items, ToIntFunction<T> weight, int maxItems, int maxWeight) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> current = new ArrayList<>();
+        int currentWeight = 0;
+
+        for (T item : items) {
+            int w = weight.applyAsInt(item);
+            if (!current.isEmpty() && (current.size() >= maxItems || currentWeight + w > maxWeight)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentWeight = 0;
+            }
+            current.add(item);
+            currentWeight += w;
+        }
+        if (!current.isEmpty())
+            chunks.add(current);
+
+        return chunks;
+    }
+
+    /**
+     * Roughly estimates the tokens of a request, assuming four characters per token.
+     */
+    private static int estimateTokens(EmbeddingRequest request) {
+        return (request.getInput().length() + 3) / 4;
+    }
+
+    private void ack(Channel channel, long deliveryTag, boolean requeue) {
+        try {
+            if (requeue)
+                channel.basicNack(deliveryTag, false, true);
+            else
+                channel.basicAck(deliveryTag, false);
+        } catch (IOException ex) {
+            logger.error("Failed send message (n)ack!", ex);
+        }
+    }
+
+    private EmbeddingRequest deserializeEmbeddingRequest(Message message) throws ChatException {
+        try {
+            return objectMapper.readValue(message.getBody(), EmbeddingRequest.class);
+        } catch (Exception e) {
+            throw new ChatException(ChatException.Code.CODE_BAD_REQUEST,
+                    "Failed to deserialize embedding request: " + e.getMessage());
+        }
+    }
+
+    private String serializeEmbeddingResponse(EmbeddingResponse response) throws ChatException {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (Exception e) {
+            logger.error("Failed to serialize embedding response", e);
+            throw new ChatException(ChatException.Code.CODE_INTERNAL_SERVER_ERROR,
+                    "Failed to serialize embedding response: " + e.getMessage());
+        }
+    }
+}
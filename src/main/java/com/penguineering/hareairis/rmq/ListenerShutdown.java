@@ -0,0 +1,95 @@
+package com.penguineering.hareairis.rmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shuts down the consumption of requests in order.
+ *
+ * <p>Stopping a listener container cancels its consumers at once, so that no further messages are delivered and the
+ * prefetched messages go back to the broker, and then waits for the listeners in progress up to the grace period.
+ * This lifecycle stops first, before the web server shuts down gracefully, and completes as soon as the consumers have
+ * been cancelled. Waiting for the listeners in progress is left to the {@link RateLimitGateDrain}, which stops after
+ * the web server.</p>
+ *
+ * <p>This lifecycle stops before the listener containers, which run in the phase below, and takes care of stopping
+ * them.</p>
+ */
+@Component
+public class ListenerShutdown implements SmartLifecycle {
+    /**
+     * The lifecycle phase of this bean. Listener containers must run in a lower phase.
+     */
+    public static final int PHASE = Integer.MAX_VALUE;
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerShutdown.class);
+    private final List<AbstractMessageListenerContainer> containers;
+    private volatile boolean running = false;
+    private volatile CompletableFuture<Void> containersStopped = CompletableFuture.completedFuture(null);
+
+    public ListenerShutdown(List<AbstractMessageListenerContainer> containers) {
+        this.containers = containers;
+    }
+
+    @Override
+    public void start() {
+        containersStopped = new CompletableFuture<>();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> {
+        });
+    }
+
+    /**
+     * Stops the listener containers.
+     *
+     * @param callback Called once the consumers of all listener containers have been cancelled.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        running = false;
+
+        CompletableFuture<Void> stopped = containersStopped;
+        if (containers.isEmpty())
+            stopped.complete(null);
+
+        AtomicInteger pending = new AtomicInteger(containers.size());
+        // returns as soon as the consumers have been cancelled, the callback follows when the listeners are done
+        containers.forEach(container -> container.stop(() -> {
+            if (pending.decrementAndGet() == 0)
+                stopped.complete(null);
+        }));
+
+        logger.info("Stopped consuming requests.");
+        callback.run();
+    }
+
+    /**
+     * Runs an action once the listeners in progress are done.
+     *
+     * @param action The action to run, at once if the listener containers have stopped already.
+     */
+    public void whenContainersStopped(Runnable action) {
+        containersStopped.thenRun(action);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
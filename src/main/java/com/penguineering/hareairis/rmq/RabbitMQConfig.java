@@ -10,6 +10,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 
+import java.time.Duration;
+
 @Configuration
 @EnableRabbit
 public class RabbitMQConfig {
@@ -17,21 +19,80 @@ public class RabbitMQConfig {
     @Value("${hareairis.rabbitmq.queue-chat-requests}")
     private String queueChatRequests;
 
+    @Value("${hareairis.rabbitmq.concurrent-consumers}")
+    private int concurrentConsumers;
+
+    @Value("${hareairis.rabbitmq.queue-embedding-requests}")
+    private String queueEmbeddingRequests;
+
+    @Value("${hareairis.embeddings.batch-size}")
+    private int embeddingsBatchSize;
+
+    @Value("${hareairis.embeddings.batch-window}")
+    private Duration embeddingsBatchWindow;
+
+    @Value("${hareairis.shutdown.grace-period}")
+    private Duration shutdownGracePeriod;
+
     @Bean
     public Queue chatRequestsQueue() {
         return new Queue(queueChatRequests, true);
     }
 
     @Bean
-    @DependsOn("rateLimitGate")
+    public Queue embeddingRequestsQueue() {
+        return new Queue(queueEmbeddingRequests, true);
+    }
+
+    /**
+     * Container for chat requests.
+     *
+     * <p>On shutdown, the container stops consuming and returns the prefetched messages to the broker. Requests in
+     * progress may finish within the grace period. The container is stopped by the {@link ListenerShutdown}.</p>
+     */
+    @Bean
+    @DependsOn({"rateLimitGate", "upstreamConnectionWarmer"})
     public SimpleMessageListenerContainer chatRequestsContainer(ConnectionFactory connectionFactory,
                                                                 ChatRequestHandler handler) {
         SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         container.setQueueNames(queueChatRequests);
+        container.setConcurrentConsumers(concurrentConsumers);
+        container.setMessageListener(handler);
+        container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        container.setChannelTransacted(true);
+        container.setObservationEnabled(true);
+        container.setForceStop(true);
+        container.setPhase(ListenerShutdown.PHASE - 1);
+        container.setShutdownTimeout(shutdownGracePeriod.toMillis());
+        return container;
+    }
+
+    /**
+     * Container for embedding requests.
+     *
+     * <p>Collects up to <code>batch-size</code> messages and hands them over to the listener as soon as no further
+     * message arrives within the <code>batch-window</code>.</p>
+     *
+     * <p>Shuts down like the chat requests container.</p>
+     */
+    @Bean
+    @DependsOn({"rateLimitGate", "upstreamConnectionWarmer"})
+    public SimpleMessageListenerContainer embeddingRequestsContainer(ConnectionFactory connectionFactory,
+                                                                     EmbeddingRequestHandler handler) {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setQueueNames(queueEmbeddingRequests);
         container.setMessageListener(handler);
         container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
         container.setChannelTransacted(true);
+        container.setObservationEnabled(true);
+        container.setForceStop(true);
+        container.setPhase(ListenerShutdown.PHASE - 1);
+        container.setShutdownTimeout(shutdownGracePeriod.toMillis());
+        container.setConsumerBatchEnabled(true);
+        container.setBatchSize(embeddingsBatchSize);
+        container.setReceiveTimeout(embeddingsBatchWindow.toMillis());
         return container;
     }
 }
\ No newline at end of file
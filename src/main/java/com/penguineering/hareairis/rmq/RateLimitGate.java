@@ -1,6 +1,8 @@
 package com.penguineering.hareairis.rmq;
 
 import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.chat.CorrelationId;
+import com.penguineering.hareairis.jfr.GateWaitEvent;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,15 +13,19 @@ import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Rate limit gate to protect against rate limiting.
  *
  * <p>Protects against rate limiting by waiting for the next available time before executing a protected call.</p>
+ *
+ * <p>On shutdown the gate is drained: calls that have already been passed on may finish, while callers that have not
+ * passed the gate yet are rejected, so that their requests can be handled elsewhere without having cost an upstream
+ * call.</p>
  */
 @Component
 public class RateLimitGate {
@@ -27,7 +33,10 @@ public class RateLimitGate {
 
     final AtomicReference<Instant> nextAvailableTime = new AtomicReference<>(Instant.now());
     final AtomicReference<Thread> waitingThread = new AtomicReference<>(null);
-    private final Lock threadLock = new ReentrantLock();
+    final AtomicReference<Thread> backingOffThread = new AtomicReference<>(null);
+    final AtomicBoolean draining = new AtomicBoolean(false);
+    // fair, so that callers pass the gate in the order of their arrival
+    private final ReentrantLock threadLock = new ReentrantLock(true);
     private final Condition threadCondition = threadLock.newCondition();
 
     /**
@@ -60,29 +69,56 @@ public class RateLimitGate {
     /**
      * Waits for the next available time and executes the protected call.
      *
+     * <p>The wait is recorded as a {@link GateWaitEvent}.</p>
+     *
      * @param protectedCall The protected call to execute.
      * @param <T>           The type of the result.
      * @return The result of the protected call.
      * @throws Exception            If the protected call throws an exception.
-     * @throws InterruptedException If the waiting thread is interrupted.
+     * @throws InterruptedException If the waiting thread is interrupted or the gate is draining.
      */
     public <T> T waitAndExecute(Callable<T> protectedCall) throws Exception {
+        GateWaitEvent event = new GateWaitEvent();
+        event.begin();
+        if (threadLock.isLocked())
+            event.reason = GateWaitEvent.REASON_CONTENTION;
+
         threadLock.lock();
         try {
             while (!waitingThread.compareAndSet(null, Thread.currentThread())) {
+                event.reason = GateWaitEvent.REASON_CONTENTION;
                 threadCondition.await();
             }
 
             waitingThread.set(Thread.currentThread());
 
+            long rateLimitStart = System.nanoTime();
             do {
                 Duration waitTime = Duration.between(Instant.now(), nextAvailableTime.get());
                 if (waitTime.isNegative())
                     break;
 
                 logger.warn("Rate limit exceeded, waiting for {} seconds...", waitTime.getSeconds());
-                Thread.sleep(waitTime);
+                event.reason = GateWaitEvent.REASON_RATE_LIMIT;
+                // registered before the check, so that drain() either sees the thread or the thread sees the drain
+                backingOffThread.set(Thread.currentThread());
+                try {
+                    rejectIfDraining();
+                    Thread.sleep(waitTime);
+                } finally {
+                    backingOffThread.set(null);
+                }
             } while (Instant.now().isBefore(nextAvailableTime.get()));
+            long rateLimitNanos = System.nanoTime() - rateLimitStart;
+
+            rejectIfDraining();
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.correlationId = CorrelationId.current().orElse(null);
+                event.rateLimitWait = Duration.ofNanos(rateLimitNanos).toMillis();
+                event.commit();
+            }
 
             return protectedCall.call();
         } finally {
@@ -92,6 +128,11 @@ public class RateLimitGate {
         }
     }
 
+    private void rejectIfDraining() throws InterruptedException {
+        if (draining.get())
+            throw new InterruptedException("Rate limit gate is draining, the call has not been executed.");
+    }
+
     /**
      * Registers a rate-limit exception.
      *
@@ -108,8 +149,30 @@ public class RateLimitGate {
                 () -> logger.warn("Tried to register a rate limit exception without a retry-after time, ignored."));
     }
 
+    /**
+     * Drains the gate.
+     *
+     * <p>New callers are rejected and a thread backing off from a rate limit is interrupted, both with an
+     * InterruptedException. Calls in progress are not affected.</p>
+     *
+     * @see RateLimitGateDrain
+     */
+    public void drain() {
+        if (draining.getAndSet(true))
+            return;
+
+        Optional.of(backingOffThread)
+                .map(AtomicReference::get)
+                .ifPresent(thread -> {
+                    logger.info("Draining the rate limit gate, interrupting the thread backing off...");
+                    thread.interrupt();
+                });
+    }
+
     /**
      * Interrupts the waiting thread if it is active.
+     *
+     * <p>This is the last resort for a call that has not finished within the grace period after the drain.</p>
      */
     @PreDestroy
     public void interruptWaitingThread() {
@@ -0,0 +1,69 @@
+package com.penguineering.hareairis.rmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the rate limit gates on shutdown.
+ *
+ * <p>The gates are shared by the requests from RabbitMQ and HTTP, so they are drained only once neither interface
+ * takes new requests: the consumers have been cancelled by the {@link ListenerShutdown}, and the web server has
+ * finished its graceful shutdown. HTTP requests in progress therefore pass the gate as usual. Requests from RabbitMQ
+ * still waiting at a gate are released without an upstream call, while the calls in progress can finish and
+ * reply.</p>
+ */
+@Component
+public class RateLimitGateDrain implements SmartLifecycle {
+    /**
+     * The lifecycle phase of this bean, right below the graceful shutdown of the web server.
+     */
+    public static final int PHASE = WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitGateDrain.class);
+    private final RateLimitGates rateLimitGates;
+    private final ListenerShutdown listenerShutdown;
+    private volatile boolean running = false;
+
+    public RateLimitGateDrain(RateLimitGates rateLimitGates, ListenerShutdown listenerShutdown) {
+        this.rateLimitGates = rateLimitGates;
+        this.listenerShutdown = listenerShutdown;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> {
+        });
+    }
+
+    /**
+     * Drains the rate limit gates.
+     *
+     * @param callback Called once the listeners in progress are done.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        running = false;
+
+        logger.info("No new requests are taken, draining the rate limit gates.");
+        rateLimitGates.drain();
+        listenerShutdown.whenContainersStopped(callback);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
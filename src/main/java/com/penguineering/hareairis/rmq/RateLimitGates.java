@@ -0,0 +1,74 @@
+package com.penguineering.hareairis.rmq;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides a rate limit gate per model deployment.
+ *
+ * <p>Each deployment has its own quota, so rate limiting on one deployment must not hold back the requests for
+ * another. The default deployment uses the default rate limit gate, whether it is named or not.</p>
+ *
+ * <p>Deployments named by clients are checked by the DeploymentRouter before a gate is requested, so the number of
+ * gates is bounded by the configuration.</p>
+ */
+@Component
+public class RateLimitGates {
+    private final RateLimitGate defaultGate;
+    private final String defaultDeployment;
+    private final ConcurrentMap<String, RateLimitGate> gates = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    public RateLimitGates(RateLimitGate defaultGate,
+                          @Value("${spring.ai.azure.openai.chat.options.deployment-name}") String defaultDeployment) {
+        this.defaultGate = defaultGate;
+        this.defaultDeployment = defaultDeployment;
+    }
+
+    /**
+     * Returns the rate limit gate for a deployment.
+     *
+     * @param deployment The deployment, empty for the default deployment.
+     * @return The rate limit gate.
+     */
+    public RateLimitGate forDeployment(Optional<String> deployment) {
+        return deployment
+                .filter(d -> !d.equals(defaultDeployment))
+                .map(d -> gates.computeIfAbsent(d, k -> createGate()))
+                .orElse(defaultGate);
+    }
+
+    private RateLimitGate createGate() {
+        RateLimitGate gate = new RateLimitGate();
+        if (draining.get())
+            gate.drain();
+        return gate;
+    }
+
+    /**
+     * Drains all gates, including the default gate.
+     *
+     * <p>Gates created afterwards are drained right away.</p>
+     */
+    public void drain() {
+        draining.set(true);
+        defaultGate.drain();
+        gates.values().forEach(RateLimitGate::drain);
+    }
+
+    /**
+     * Interrupts the waiting threads of the deployment gates.
+     *
+     * <p>The default gate is a bean on its own and takes care of its waiting thread.</p>
+     */
+    @PreDestroy
+    public void interruptWaitingThreads() {
+        gates.values().forEach(RateLimitGate::interruptWaitingThread);
+    }
+}
@@ -0,0 +1,107 @@
+package com.penguineering.hareairis.rmq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.hareairis.jfr.ReplyPublishEvent;
+import com.penguineering.hareairis.model.ChatError;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatMetadata;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Publishes replies and errors to RabbitMQ.
+ *
+ * <p>Replies are sent to the default exchange with the routing key given by the request.</p>
+ */
+@Component
+public class ReplyPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(ReplyPublisher.class);
+    private final ObjectMapper objectMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObservationRegistry observationRegistry;
+
+    public ReplyPublisher(ObjectMapper objectMapper,
+                          RabbitTemplate rabbitTemplate,
+                          ObservationRegistry observationRegistry) {
+        this.objectMapper = objectMapper;
+        this.rabbitTemplate = rabbitTemplate;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Sends a JSON message.
+     *
+     * <p>The publication is recorded as a {@link ReplyPublishEvent}.</p>
+     *
+     * @param json          The JSON message.
+     * @param to            The routing key on the default exchange.
+     * @param correlationId The optional correlation ID to copy to the message.
+     */
+    public void send(String json, String to, Optional<String> correlationId) {
+        MessageProperties messageProperties = new MessageProperties();
+        correlationId.ifPresent(messageProperties::setCorrelationId);
+        messageProperties.setContentType("application/json");
+        Message responseMessage = new Message(json.getBytes(), messageProperties);
+
+        ReplyPublishEvent event = new ReplyPublishEvent();
+        event.begin();
+        Observation
+                .createNotStarted("hareairis.reply", observationRegistry)
+                .observe(() -> rabbitTemplate.send(to, responseMessage));
+        event.end();
+        if (event.shouldCommit()) {
+            event.correlationId = correlationId.orElse(null);
+            event.routingKey = to;
+            event.size = responseMessage.getBody().length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sends an error to the error queue, if one has been provided.
+     *
+     * @param e             The exception to report.
+     * @param metadata      The optional metadata, may be null.
+     * @param errorTo       The optional routing key for errors.
+     * @param correlationId The optional correlation ID to copy to the message.
+     */
+    public void sendError(Exception e, ChatMetadata metadata,
+                          Optional<String> errorTo, Optional<String> correlationId) {
+        Optional<String> json = serializeError(e, metadata);
+        errorTo.ifPresentOrElse(
+                to -> json.ifPresent(
+                        j -> send(j, to, correlationId)),
+                () -> logger.error("Error on handling request!", e)
+        );
+    }
+
+    private Optional<String> serializeError(Exception e, ChatMetadata metadata) {
+        Optional<ChatException> chatEx = e instanceof ChatException
+                ? Optional.of((ChatException) e)
+                : Optional.of(new ChatException(e.getMessage()));
+
+        try {
+            return chatEx
+                    .map(ex -> new ChatError(ex, metadata))
+                    .map(err -> {
+                        try {
+                            return objectMapper.writeValueAsString(err);
+                        } catch (JsonProcessingException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    });
+        } catch (Exception ex) {
+            logger.error("Failed to serialize error", ex);
+            return Optional.empty();
+        }
+    }
+}
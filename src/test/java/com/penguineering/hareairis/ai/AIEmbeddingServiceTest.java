@@ -0,0 +1,31 @@
+package com.penguineering.hareairis.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIEmbeddingServiceTest {
+
+    @Test
+    void testSplitTokensProportionally() {
+        int[] shares = AIEmbeddingService.splitTokens(30, List.of("aaaa", "aaaaaaaa"));
+
+        assertArrayEquals(new int[]{10, 20}, shares);
+    }
+
+    @Test
+    void testSplitTokensAssignsRemainderToLongestInput() {
+        int[] shares = AIEmbeddingService.splitTokens(11, List.of("aaa", "aaaa", "aaa"));
+
+        assertEquals(11, Arrays.stream(shares).sum());
+        assertArrayEquals(new int[]{3, 5, 3}, shares);
+    }
+
+    @Test
+    void testSplitTokensEmpty() {
+        assertEquals(0, AIEmbeddingService.splitTokens(10, List.of()).length);
+    }
+}
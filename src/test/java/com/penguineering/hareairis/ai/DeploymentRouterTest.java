@@ -0,0 +1,76 @@
+package com.penguineering.hareairis.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.ChatRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeploymentRouterTest {
+    private static final DeploymentRoutingProperties PROPERTIES = new DeploymentRoutingProperties(List.of(
+            new DeploymentRoutingProperties.Route("mini", 200, 50, List.of("interactive")),
+            new DeploymentRoutingProperties.Route("batch", null, null, List.of("batch"))
+    ), List.of("extra"));
+
+    private final DeploymentRouter router = new DeploymentRouter(PROPERTIES, "gpt-4o");
+
+    private static ChatRequest request(String prompt, Integer maxTokens, String deployment, String latencyClass) {
+        Map<String, Object> json = new HashMap<>();
+        json.put("prompt", prompt);
+        json.put("max-tokens", maxTokens);
+        json.put("deployment", deployment);
+        json.put("latency-class", latencyClass);
+        return new ObjectMapper().convertValue(json, ChatRequest.class);
+    }
+
+    @Test
+    void testExplicitDeploymentWins() {
+        assertEquals(Optional.of("gpt-4o"), router.route(request("Hi", 10, "gpt-4o", "interactive")));
+    }
+
+    @Test
+    void testRouteAndFurtherDeploymentsCanBeNamed() {
+        assertEquals(Optional.of("batch"), router.route(request("Hi", 10, "batch", "interactive")));
+        assertEquals(Optional.of("extra"), router.route(request("Hi", 10, "extra", null)));
+    }
+
+    @Test
+    void testUnknownDeploymentIsRejected() {
+        ChatException e = assertThrows(ChatException.class,
+                () -> router.route(request("Hi", 10, "unknown", null)));
+        assertEquals(400, e.getCode());
+    }
+
+    @Test
+    void testSmallInteractiveRequestIsRouted() {
+        assertEquals(Optional.of("mini"), router.route(request("Hi", 10, null, "interactive")));
+    }
+
+    @Test
+    void testLargePromptIsNotRoutedToSmallDeployment() {
+        assertEquals(Optional.empty(), router.route(request("x".repeat(201), 10, null, "interactive")));
+    }
+
+    @Test
+    void testMissingMaxTokensDoesNotMatchLimit() {
+        assertEquals(Optional.empty(), router.route(request("Hi", null, null, "interactive")));
+    }
+
+    @Test
+    void testLatencyClassRoute() {
+        assertEquals(Optional.of("batch"), router.route(request("x".repeat(1000), null, null, "batch")));
+    }
+
+    @Test
+    void testNoRoutes() {
+        DeploymentRouter emptyRouter = new DeploymentRouter(new DeploymentRoutingProperties(null, null), "gpt-4o");
+
+        assertEquals(Optional.empty(), emptyRouter.route(request("Hi", 10, null, "interactive")));
+    }
+}
@@ -0,0 +1,225 @@
+package com.penguineering.hareairis.ai;
+
+import com.penguineering.hareairis.model.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+    private static final int ESTIMATED_INPUT_TOKENS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // releases the slow primary calls
+    private final CountDownLatch release = new CountDownLatch(1);
+    private RequestHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (hedger != null)
+            hedger.shutdown();
+    }
+
+    private RequestHedger hedger(boolean enabled, Duration delay, double budget) {
+        hedger = new RequestHedger(enabled, delay, Duration.ofMillis(10), 0.95, budget, "fast", meterRegistry);
+        return hedger;
+    }
+
+    /**
+     * The primary deployment answers once released, the hedge deployment "fast" answers at once.
+     */
+    private final Function<Optional<String>, ChatResponse> call = deployment -> {
+        if (deployment.filter("fast"::equals).isEmpty())
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("cancelled");
+            }
+
+        return ChatResponse.builder()
+                .response(deployment.orElse("default"))
+                .inputTokens(10)
+                .outputTokens(5)
+                .build();
+    };
+
+    @Test
+    void testDisabled() throws Exception {
+        ChatResponse response = hedger(false, Duration.ofMillis(50), 1.0)
+                .call(Optional.of("fast"), ESTIMATED_INPUT_TOKENS, call);
+
+        assertEquals("fast", response.getResponse());
+        assertNull(response.getMetadata());
+        assertEquals(10, count("hareairis.upstream.tokens", "call", "primary", "direction", "input"));
+    }
+
+    @Test
+    void testSlowCallIsHedged() throws Exception {
+        ChatResponse response = hedger(true, Duration.ofMillis(50), 1.0)
+                .call(Optional.empty(), ESTIMATED_INPUT_TOKENS, call);
+
+        assertEquals("fast", response.getResponse());
+        assertTrue(response.getMetadata().getHedged());
+        assertEquals(5, count("hareairis.upstream.tokens", "call", "hedge", "direction", "output"));
+
+        // the primary call is aborted by the cancellation
+        awaitCount(1, "hareairis.hedging.aborted", "call", "primary");
+        assertEquals(ESTIMATED_INPUT_TOKENS,
+                count("hareairis.hedging.aborted.tokens", "call", "primary", "direction", "input"));
+        assertEquals(0, count("hareairis.upstream.tokens", "call", "primary", "direction", "input"));
+    }
+
+    @Test
+    void testCancelledPrimaryIsCountedAsCancelled() throws Exception {
+        ChatResponse response = hedger(true, Duration.ofMillis(50), 1.0)
+                .call(Optional.empty(), ESTIMATED_INPUT_TOKENS, deployment -> {
+                    if (deployment.isEmpty())
+                        awaitIgnoringInterrupts(release);
+                    return call.apply(Optional.of("fast"));
+                });
+        // the primary call completes after it has been cancelled
+        release.countDown();
+
+        assertTrue(response.getMetadata().getHedged());
+        awaitCount(5, "hareairis.upstream.tokens", "call", "cancelled", "direction", "output");
+        assertEquals(5, count("hareairis.upstream.tokens", "call", "hedge", "direction", "output"));
+        assertEquals(0, count("hareairis.upstream.tokens", "call", "primary", "direction", "output"),
+                "The cancelled primary call must not be counted as primary call.");
+        assertEquals(0, count("hareairis.hedging.aborted", "call", "primary"));
+    }
+
+    @Test
+    void testCancelledPrimaryIsSampled() throws Exception {
+        RequestHedger h = new RequestHedger(true, Duration.ZERO, Duration.ZERO, 1.0, 1.0, "fast", meterRegistry);
+        hedger = h;
+        for (int i = 0; i < 20; i++)
+            h.recordLatency(Duration.ofMillis(30).toNanos());
+
+        // the hedge is sent after 30 ms and answers after further 40 ms
+        h.call(Optional.empty(), ESTIMATED_INPUT_TOKENS, deployment -> {
+            if (deployment.isPresent())
+                try {
+                    Thread.sleep(40);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            return call.apply(deployment);
+        });
+
+        assertTrue(h.hedgeDelay().orElseThrow().compareTo(Duration.ofMillis(70)) >= 0,
+                "The cancelled primary call should be sampled with the time it has taken.");
+    }
+
+    @Test
+    void testExhaustedBudgetWaitsForPrimary() throws Exception {
+        RequestHedger h = hedger(true, Duration.ofMillis(50), 0.0);
+        AtomicInteger hedges = new AtomicInteger();
+
+        FutureTask<ChatResponse> task = new FutureTask<>(() -> h.call(Optional.empty(), ESTIMATED_INPUT_TOKENS,
+                deployment -> {
+                    if (deployment.isPresent())
+                        hedges.incrementAndGet();
+                    return call.apply(deployment);
+                }));
+        Thread caller = new Thread(task);
+        caller.start();
+
+        // the caller waits for the primary call without a timeout once the hedge has been refused
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (caller.getState() != Thread.State.WAITING)
+                Thread.onSpinWait();
+        });
+        release.countDown();
+
+        ChatResponse response = task.get();
+        assertEquals("default", response.getResponse());
+        assertNull(response.getMetadata());
+        assertEquals(0, hedges.get());
+    }
+
+    @Test
+    void testBudgetIsWindowed() {
+        RequestHedger h = hedger(true, Duration.ofMillis(50), 0.05);
+        for (int i = 0; i < 1000; i++)
+            h.recordCall();
+
+        // earlier calls without hedges do not save up budget
+        assertEquals(5, hedgeWithinWindow(h));
+        assertEquals(5, hedgeWithinWindow(h));
+    }
+
+    /**
+     * Records a window of calls and tries to hedge each of them.
+     *
+     * @return The number of calls that may be hedged.
+     */
+    private static int hedgeWithinWindow(RequestHedger h) {
+        int acquired = 0;
+        for (int i = 0; i < 100; i++)
+            if (h.tryAcquireBudget(h.recordCall()))
+                acquired++;
+        return acquired;
+    }
+
+    @Test
+    void testPrimaryFailureIsReported() {
+        RequestHedger h = hedger(true, Duration.ofMillis(50), 1.0);
+
+        RateLimitException e = assertThrows(RateLimitException.class,
+                () -> h.call(Optional.empty(), ESTIMATED_INPUT_TOKENS, d -> {
+                    throw new RateLimitException("Rate limit exceeded");
+                }));
+        assertEquals("Rate limit exceeded", e.getMessage());
+    }
+
+    @Test
+    void testAdaptiveDelay() {
+        RequestHedger h = hedger(true, Duration.ZERO, 1.0);
+        assertTrue(h.hedgeDelay().isEmpty(), "Without enough samples there should be no delay.");
+
+        for (int i = 1; i <= 100; i++)
+            h.recordLatency(Duration.ofMillis(i).toNanos());
+
+        assertEquals(Optional.of(Duration.ofMillis(95)), h.hedgeDelay());
+    }
+
+    private double count(String name, String... tags) {
+        return meterRegistry.counter(name, tags).count();
+    }
+
+    /**
+     * Waits until a counter has reached the expected value, as calls are metered on their own thread.
+     */
+    private void awaitCount(double expected, String name, String... tags) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (count(name, tags) < expected)
+                Thread.onSpinWait();
+        });
+    }
+
+    /**
+     * Waits for the latch like a blocking call that does not react to the interruption.
+     */
+    private static void awaitIgnoringInterrupts(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true)
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
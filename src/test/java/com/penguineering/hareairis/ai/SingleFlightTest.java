@@ -0,0 +1,96 @@
+package com.penguineering.hareairis.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void testSequentialCallsAreNotShared() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        SingleFlight.Outcome<String> first = singleFlight.execute("key", () -> "r" + calls.incrementAndGet());
+        SingleFlight.Outcome<String> second = singleFlight.execute("key", () -> "r" + calls.incrementAndGet());
+
+        assertEquals("r1", first.value());
+        assertFalse(first.shared());
+        assertEquals("r2", second.value());
+        assertFalse(second.shared());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void testConcurrentCallsAreShared() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SingleFlight.Outcome<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "result";
+            }));
+            started.await();
+
+            FutureTask<SingleFlight.Outcome<String>> follower = startWaiting(
+                    () -> singleFlight.execute("key", () -> "unexpected " + calls.incrementAndGet()));
+            release.countDown();
+
+            assertFalse(leader.get().shared());
+            assertEquals("result", follower.get().value());
+            assertTrue(follower.get().shared());
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    void testExceptionIsShared() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SingleFlight.Outcome<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                release.await();
+                throw new IllegalStateException("failed");
+            }));
+            started.await();
+
+            AtomicInteger followerCalls = new AtomicInteger();
+            FutureTask<SingleFlight.Outcome<String>> follower = startWaiting(
+                    () -> singleFlight.execute("key", () -> "unexpected " + followerCalls.incrementAndGet()));
+            release.countDown();
+
+            ExecutionException leaderEx = assertThrows(ExecutionException.class, leader::get);
+            assertInstanceOf(IllegalStateException.class, leaderEx.getCause());
+            ExecutionException followerEx = assertThrows(ExecutionException.class, follower::get);
+            assertInstanceOf(IllegalStateException.class, followerEx.getCause());
+            assertEquals(0, followerCalls.get());
+        }
+    }
+
+    /**
+     * Starts the call on a new thread and waits until the thread blocks, i.e. waits for the call in flight, so that
+     * the leader is only released afterwards.
+     */
+    private static <T> FutureTask<T> startWaiting(Callable<T> call) {
+        FutureTask<T> task = new FutureTask<>(call);
+        Thread thread = new Thread(task);
+        thread.start();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (thread.getState() != Thread.State.WAITING)
+                Thread.onSpinWait();
+        });
+        return task;
+    }
+}
@@ -0,0 +1,75 @@
+package com.penguineering.hareairis.ai;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamConnectionWarmerTest {
+    private final AtomicInteger accepted = new AtomicInteger();
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .doOnConnection(connection -> accepted.incrementAndGet())
+                .handle((request, response) -> response.sendString(Mono.just("{\"error\":\"not found\"}")))
+                .bindNow();
+
+        connectionProvider = ConnectionProvider.create("warmer-test", 2);
+        httpClient = new NettyAsyncHttpClientBuilder(reactor.netty.http.client.HttpClient
+                .create(connectionProvider)
+                .keepAlive(true))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        server.disposeNow();
+    }
+
+    private String endpoint() {
+        return "http://localhost:" + server.port();
+    }
+
+    @Test
+    void testWarmedConnectionsStayPooled() {
+        new UpstreamConnectionWarmer(httpClient, endpoint(), 2, Duration.ofSeconds(5)).warmUp();
+        assertEquals(2, accepted.get());
+
+        // the next calls use the warmed connections instead of opening new ones
+        Flux.range(0, 2)
+                .flatMap(i -> httpClient.send(new HttpRequest(HttpMethod.GET, endpoint()))
+                        .flatMap(response -> response.getBody().then()), 2)
+                .then()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(2, accepted.get(), "The warmed connections should have been reused.");
+    }
+
+    @Test
+    void testUnreachableEndpointDoesNotFail() {
+        String unreachable = endpoint();
+        server.disposeNow();
+
+        assertDoesNotThrow(() -> new UpstreamConnectionWarmer(httpClient, unreachable, 2, Duration.ofSeconds(5))
+                .warmUp());
+    }
+}
@@ -0,0 +1,119 @@
+package com.penguineering.hareairis.chat;
+
+import com.penguineering.hareairis.ai.AIChatService;
+import com.penguineering.hareairis.ai.ChatRequestCoalescer;
+import com.penguineering.hareairis.ai.DeploymentRouter;
+import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.ai.RequestHedger;
+import com.penguineering.hareairis.model.ChatRequest;
+import com.penguineering.hareairis.rmq.RateLimitGate;
+import com.penguineering.hareairis.rmq.RateLimitGates;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatDispatcherTest {
+    @Mock
+    private AIChatService aiChatService;
+
+    @Mock
+    private DeploymentRouter deploymentRouter;
+
+    @Mock
+    private ChatRequestCoalescer coalescer;
+
+    @Mock
+    private RequestHedger requestHedger;
+
+    private ChatDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new ChatDispatcher(aiChatService, new RateLimitGates(new RateLimitGate(), "gpt-4o"),
+                deploymentRouter, ObservationRegistry.NOOP, coalescer, requestHedger);
+    }
+
+    @Test
+    void testStreamCancelReachesUpstream() {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        when(aiChatService.streamChatRequest(any(), any())).thenReturn(Flux
+                .concat(Flux.just("Hel"), Flux.<String>never())
+                .doOnCancel(() -> cancelled.set(true)));
+
+        dispatcher.stream(new ChatRequest())
+                .as(StepVerifier::create)
+                .expectNext("Hel")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertTrue(cancelled.get(), "The upstream call should be cancelled with the stream.");
+    }
+
+    @Test
+    void testGateIsReleasedAfterFirstFragment() throws Exception {
+        CountDownLatch firstFragment = new CountDownLatch(1);
+        when(aiChatService.streamChatRequest(any(), any())).thenReturn(
+                Flux.concat(Flux.just("Hel"), Flux.<String>never()),
+                Flux.just("Hi"));
+
+        Disposable first = dispatcher.stream(new ChatRequest()).subscribe(fragment -> firstFragment.countDown());
+        try {
+            assertTrue(firstFragment.await(5, TimeUnit.SECONDS));
+
+            // the first stream is still open and must not block the second one
+            dispatcher.stream(new ChatRequest())
+                    .as(StepVerifier::create)
+                    .expectNext("Hi")
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            first.dispose();
+        }
+    }
+
+    @Test
+    void testRateLimitBeforeFirstFragmentIsRetried() {
+        when(aiChatService.streamChatRequest(any(), any())).thenReturn(
+                Flux.error(new RateLimitException("Rate limit exceeded", Duration.ofMillis(100))),
+                Flux.just("Hel", "lo"));
+
+        dispatcher.stream(new ChatRequest())
+                .as(StepVerifier::create)
+                .expectNext("Hel", "lo")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(aiChatService, times(2)).streamChatRequest(any(), any());
+    }
+
+    @Test
+    void testRateLimitAfterFirstFragmentIsNotRetried() {
+        when(aiChatService.streamChatRequest(any(), any())).thenReturn(Flux.concat(
+                Flux.just("Hel"),
+                Flux.error(new RateLimitException("Rate limit exceeded", Duration.ofMillis(100)))));
+
+        dispatcher.stream(new ChatRequest())
+                .as(StepVerifier::create)
+                .expectNext("Hel")
+                .expectError(RateLimitException.class)
+                .verify(Duration.ofSeconds(5));
+
+        verify(aiChatService, times(1)).streamChatRequest(any(), any());
+    }
+}
@@ -0,0 +1,62 @@
+package com.penguineering.hareairis.chat;
+
+import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.model.ChatMetadata;
+import com.penguineering.hareairis.rmq.RateLimitGate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimingTest {
+
+    @Test
+    void testWithoutTimestampHasNoQueueTime() {
+        RequestTiming timing = new RequestTiming(Optional.empty());
+
+        ChatMetadata metadata = timing.applyTo(null);
+
+        assertNull(metadata.getQueueTimeMs());
+        assertNull(metadata.getGateWaitMs());
+        assertNull(metadata.getRetryCount());
+    }
+
+    @Test
+    void testQueueTimeFromTimestamp() {
+        RequestTiming timing = new RequestTiming(Optional.of(Instant.now().minusSeconds(2)));
+
+        ChatMetadata metadata = timing.applyTo(null);
+
+        assertTrue(metadata.getQueueTimeMs() >= 2000, "The queue time should cover the age of the request.");
+    }
+
+    @Test
+    void testQueueTimeIsNeverNegative() {
+        RequestTiming timing = new RequestTiming(Optional.of(Instant.now().plusSeconds(2)));
+
+        assertEquals(0L, timing.applyTo(null).getQueueTimeMs());
+    }
+
+    @Test
+    void testGateWaitAndRetries() throws Exception {
+        RequestTiming timing = new RequestTiming(Optional.empty());
+        RateLimitGate gate = new RateLimitGate();
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = timing.gate(() -> gate.callWithRateLimit(() -> timing.upstream(() -> {
+            if (calls.incrementAndGet() == 1)
+                throw new RateLimitException("Rate limit exceeded", Duration.ofMillis(200));
+            return "Success";
+        })));
+
+        ChatMetadata metadata = timing.applyTo(ChatMetadata.builder().deployment("gpt-4o").build());
+        assertEquals("Success", result);
+        assertEquals(1, metadata.getRetryCount());
+        assertTrue(metadata.getGateWaitMs() >= 100, "The back-off should be counted as gate wait time.");
+        assertEquals("gpt-4o", metadata.getDeployment(), "Existing metadata should be kept.");
+    }
+}
@@ -0,0 +1,132 @@
+package com.penguineering.hareairis.conversation;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryConversationStoreTest {
+
+    @Test
+    void testUnknownConversationIsEmpty() {
+        InMemoryConversationStore store = new InMemoryConversationStore(10, 10, Duration.ofMinutes(1));
+
+        assertTrue(store.getTurns("unknown").isEmpty());
+    }
+
+    @Test
+    void testTurnsAreKeptInOrder() {
+        InMemoryConversationStore store = new InMemoryConversationStore(10, 10, Duration.ofMinutes(1));
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+        store.addTurn("c1", new ConversationTurn("p2", "r2"));
+
+        assertEquals(List.of(new ConversationTurn("p1", "r1"), new ConversationTurn("p2", "r2")),
+                store.getTurns("c1"));
+    }
+
+    @Test
+    void testTurnsAreWindowed() {
+        InMemoryConversationStore store = new InMemoryConversationStore(10, 2, Duration.ofMinutes(1));
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+        store.addTurn("c1", new ConversationTurn("p2", "r2"));
+        store.addTurn("c1", new ConversationTurn("p3", "r3"));
+
+        assertEquals(List.of(new ConversationTurn("p2", "r2"), new ConversationTurn("p3", "r3")),
+                store.getTurns("c1"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedConversationIsEvicted() {
+        InMemoryConversationStore store = new InMemoryConversationStore(2, 10, Duration.ofMinutes(1));
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+        store.addTurn("c2", new ConversationTurn("p2", "r2"));
+        store.getTurns("c1");
+        store.addTurn("c3", new ConversationTurn("p3", "r3"));
+
+        assertFalse(store.getTurns("c1").isEmpty(), "The recently used conversation should be kept.");
+        assertTrue(store.getTurns("c2").isEmpty(), "The least recently used conversation should be evicted.");
+        assertFalse(store.getTurns("c3").isEmpty());
+    }
+
+    @Test
+    void testConversationExpires() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        InMemoryConversationStore store = new InMemoryConversationStore(10, 10, Duration.ofMinutes(1), clock);
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(2));
+
+        assertTrue(store.getTurns("c1").isEmpty());
+    }
+
+    @Test
+    void testReadingKeepsConversationAlive() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        InMemoryConversationStore store = new InMemoryConversationStore(10, 10, Duration.ofMinutes(30), clock);
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        store.addTurn("c2", new ConversationTurn("p2", "r2"));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        assertFalse(store.getTurns("c1").isEmpty());
+
+        // c2 expired, c1 has been read after c2 was added and is still alive
+        clock.instant = clock.instant.plus(Duration.ofSeconds(29 * 60 + 30));
+        store.addTurn("c3", new ConversationTurn("p3", "r3"));
+
+        assertEquals(List.of(new ConversationTurn("p1", "r1")), store.getTurns("c1"));
+        assertTrue(store.getTurns("c2").isEmpty());
+        assertFalse(store.getTurns("c3").isEmpty());
+    }
+
+    @Test
+    void testExpiredConversationsDoNotTakeLiveSlots() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        InMemoryConversationStore store = new InMemoryConversationStore(2, 10, Duration.ofMinutes(30), clock);
+        store.addTurn("c1", new ConversationTurn("p1", "r1"));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        store.addTurn("c2", new ConversationTurn("p2", "r2"));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        store.getTurns("c1");
+
+        // c2 expires; adding c3 must drop c2 rather than the live c1
+        clock.instant = clock.instant.plus(Duration.ofSeconds(29 * 60 + 30));
+        store.addTurn("c3", new ConversationTurn("p3", "r3"));
+        store.addTurn("c3", new ConversationTurn("p4", "r4"));
+
+        assertFalse(store.getTurns("c1").isEmpty());
+        assertEquals(2, store.getTurns("c3").size());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.penguineering.hareairis.http;
+
+import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.chat.ChatDispatcher;
+import com.penguineering.hareairis.chat.CorrelationId;
+import com.penguineering.hareairis.model.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatControllerTest {
+    @Mock
+    private ChatDispatcher chatDispatcher;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToController(new ChatController(chatDispatcher)).build();
+    }
+
+    @Test
+    void testChat() throws Exception {
+        when(chatDispatcher.dispatch(any(), any())).thenReturn(ChatResponse.builder()
+                .response("Hello")
+                .inputTokens(1)
+                .outputTokens(2)
+                .build());
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.response").isEqualTo("Hello")
+                .jsonPath("$.output-tokens").isEqualTo(2);
+    }
+
+    @Test
+    void testChatCorrelationId() throws Exception {
+        AtomicReference<Optional<String>> dispatched = new AtomicReference<>();
+        when(chatDispatcher.dispatch(any(), any())).thenAnswer(invocation -> {
+            dispatched.set(CorrelationId.current());
+            return ChatResponse.builder().response("Hello").build();
+        });
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(ChatController.CORRELATION_ID_HEADER, "c1")
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(ChatController.CORRELATION_ID_HEADER, "c1");
+
+        assertEquals(Optional.of("c1"), dispatched.get(), "The correlation ID should be set while dispatching.");
+    }
+
+    @Test
+    void testChatGeneratesCorrelationId() throws Exception {
+        when(chatDispatcher.dispatch(any(), any())).thenReturn(ChatResponse.builder().response("Hello").build());
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ChatController.CORRELATION_ID_HEADER);
+    }
+
+    @Test
+    void testChatError() throws Exception {
+        when(chatDispatcher.dispatch(any(), any())).thenThrow(new RateLimitException("Rate limit exceeded"));
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(429)
+                .jsonPath("$.message").isEqualTo("Rate limit exceeded");
+    }
+
+    @Test
+    void testChatInterrupted() throws Exception {
+        when(chatDispatcher.dispatch(any(), any())).thenThrow(new InterruptedException("Rate limit gate is draining"));
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().exists("Retry-After")
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(503);
+    }
+
+    @Test
+    void testChatUnexpectedError() throws Exception {
+        when(chatDispatcher.dispatch(any(), any())).thenThrow(new IllegalStateException("Unexpected"));
+
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isEqualTo(500)
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(500)
+                .jsonPath("$.message").isEqualTo("Unexpected");
+    }
+
+    @Test
+    void testChatUnreadableRequest() {
+        client.post().uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prompt\": ")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(400);
+    }
+
+    @Test
+    void testStream() throws Exception {
+        when(chatDispatcher.stream(any())).thenReturn(Flux.just("Hel", "lo"));
+
+        client.post().uri("/chat/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue("{\"prompt\": \"Hi\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .collectList()
+                .map(fragments -> String.join("", fragments))
+                .as(StepVerifier::create)
+                .expectNext("Hello")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,75 @@
+package com.penguineering.hareairis.rmq;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletedResultStoreTest {
+    private static final byte[] BODY = "{\"prompt\":\"Hi\"}".getBytes();
+
+    @Test
+    void testUnknownKey() {
+        CompletedResultStore store = new CompletedResultStore(10, "");
+
+        assertTrue(store.get("unknown", "reply-to", BODY).isEmpty());
+    }
+
+    @Test
+    void testPutAndGet() {
+        CompletedResultStore store = new CompletedResultStore(10, "");
+        store.put("key", "reply-to", BODY, "{\"response\":\"Hello\"}");
+
+        assertEquals(Optional.of("{\"response\":\"Hello\"}"), store.get("key", "reply-to", BODY));
+    }
+
+    @Test
+    void testKeyIsScopedByReplyToAndBody() {
+        CompletedResultStore store = new CompletedResultStore(10, "");
+        store.put("1", "reply-to", BODY, "reply");
+
+        assertTrue(store.get("1", "other-client", BODY).isEmpty(),
+                "A key reused by another client must not return the reply.");
+        assertTrue(store.get("1", "reply-to", "{\"prompt\":\"Bye\"}".getBytes()).isEmpty(),
+                "A key reused for another request must not return the reply.");
+    }
+
+    @Test
+    void testOldestEntryIsEvicted() {
+        CompletedResultStore store = new CompletedResultStore(2, "");
+        store.put("k1", "reply-to", BODY, "r1");
+        store.put("k2", "reply-to", BODY, "r2");
+        store.put("k3", "reply-to", BODY, "r3");
+
+        assertTrue(store.get("k1", "reply-to", BODY).isEmpty());
+        assertEquals(Optional.of("r2"), store.get("k2", "reply-to", BODY));
+        assertEquals(Optional.of("r3"), store.get("k3", "reply-to", BODY));
+    }
+
+    @Test
+    void testPersistedResultsSurviveRestart(@TempDir Path dir) {
+        CompletedResultStore store = new CompletedResultStore(10, dir.toString());
+        store.put("key/with:odd*chars", "reply-to", BODY, "reply");
+
+        CompletedResultStore restarted = new CompletedResultStore(10, dir.toString());
+
+        assertEquals(Optional.of("reply"), restarted.get("key/with:odd*chars", "reply-to", BODY));
+    }
+
+    @Test
+    void testEvictedResultsAreDeleted(@TempDir Path dir) throws IOException {
+        CompletedResultStore store = new CompletedResultStore(1, dir.toString());
+        store.put("k1", "reply-to", BODY, "r1");
+        store.put("k2", "reply-to", BODY, "r2");
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.penguineering.hareairis.rmq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.hareairis.ai.AIEmbeddingService;
+import com.penguineering.hareairis.model.ChatException;
+import com.penguineering.hareairis.model.EmbeddingRequest;
+import com.penguineering.hareairis.model.EmbeddingResponse;
+import com.rabbitmq.client.Channel;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingRequestHandlerTest {
+    @Mock
+    private AIEmbeddingService aiEmbeddingService;
+
+    @Mock
+    private ReplyPublisher replyPublisher;
+
+    @Mock
+    private Channel channel;
+
+    private EmbeddingRequestHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new EmbeddingRequestHandler(new ObjectMapper(), aiEmbeddingService, replyPublisher,
+                new RateLimitGates(new RateLimitGate(), "gpt-4o"), "text-embedding-3-small",
+                ObservationRegistry.NOOP, 16, 8000);
+    }
+
+    private static Message message(String input, String replyTo, long deliveryTag) {
+        MessageProperties props = new MessageProperties();
+        props.setReplyTo(replyTo);
+        props.setCorrelationId("c" + deliveryTag);
+        props.setHeader("error_to", "errors");
+        props.setDeliveryTag(deliveryTag);
+        return new Message(("{\"input\":\"" + input + "\"}").getBytes(), props);
+    }
+
+    private static EmbeddingResponse response(float value) {
+        return EmbeddingResponse.builder().embedding(new float[]{value}).inputTokens(1).batchSize(2).build();
+    }
+
+    @Test
+    void testBatchRepliesAndAcksEachMessage() throws Exception {
+        when(aiEmbeddingService.handleEmbeddingRequests(anyList())).thenReturn(List.of(response(1), response(2)));
+
+        handler.onMessageBatch(List.of(message("a", "reply-a", 1), message("b", "reply-b", 2)), channel);
+
+        verify(aiEmbeddingService, times(1)).handleEmbeddingRequests(anyList());
+        verify(replyPublisher).send(contains("1.0"), eq("reply-a"), eq(Optional.of("c1")));
+        verify(replyPublisher).send(contains("2.0"), eq("reply-b"), eq(Optional.of("c2")));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void testUpstreamFailureNacksEachMessage() throws Exception {
+        ChatException failure = new ChatException(ChatException.Code.CODE_SERVICE_UNAVAILABLE, "unavailable");
+        when(aiEmbeddingService.handleEmbeddingRequests(anyList())).thenThrow(failure);
+
+        handler.onMessageBatch(List.of(message("a", "reply-a", 1), message("b", "reply-b", 2)), channel);
+
+        verify(replyPublisher).sendError(failure, null, Optional.of("errors"), Optional.of("c1"));
+        verify(replyPublisher).sendError(failure, null, Optional.of("errors"), Optional.of("c2"));
+        verify(replyPublisher, never()).send(anyString(), anyString(), any());
+        verify(channel).basicNack(1, false, true);
+        verify(channel).basicNack(2, false, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void testInvalidMessageIsRejectedAlone() throws Exception {
+        when(aiEmbeddingService.handleEmbeddingRequests(anyList())).thenReturn(List.of(response(2)));
+
+        handler.onMessageBatch(List.of(message("a", null, 1), message("b", "reply-b", 2)), channel);
+
+        verify(replyPublisher).sendError(any(ChatException.class), isNull(), eq(Optional.of("errors")),
+                eq(Optional.of("c1")));
+        verify(replyPublisher).send(contains("2.0"), eq("reply-b"), eq(Optional.of("c2")));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+    }
+
+    @Test
+    void testRejectedBatchIsRetriedOneByOne() throws Exception {
+        ChatException tooLong = new ChatException(ChatException.Code.CODE_BAD_REQUEST, "input too long");
+        when(aiEmbeddingService.handleEmbeddingRequests(anyList())).thenAnswer(invocation -> {
+            List<EmbeddingRequest> requests = invocation.getArgument(0);
+            if (requests.stream().anyMatch(r -> r.getInput().equals("bad")))
+                throw tooLong;
+            return List.of(response(1));
+        });
+
+        handler.onMessageBatch(List.of(message("a", "reply-a", 1), message("bad", "reply-b", 2)), channel);
+
+        verify(aiEmbeddingService, times(3)).handleEmbeddingRequests(anyList());
+        verify(replyPublisher).send(contains("1.0"), eq("reply-a"), eq(Optional.of("c1")));
+        verify(replyPublisher).sendError(tooLong, null, Optional.of("errors"), Optional.of("c2"));
+        verify(replyPublisher, never()).sendError(any(), any(), any(), eq(Optional.of("c1")));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void testEmptyInputIsRejectedAlone() throws Exception {
+        when(aiEmbeddingService.handleEmbeddingRequests(anyList())).thenReturn(List.of(response(1)));
+
+        handler.onMessageBatch(List.of(message("a", "reply-a", 1), message("", "reply-b", 2)), channel);
+
+        verify(aiEmbeddingService).handleEmbeddingRequests(argThat(requests -> requests.size() == 1));
+        verify(replyPublisher).send(contains("1.0"), eq("reply-a"), eq(Optional.of("c1")));
+        verify(replyPublisher).sendError(any(ChatException.class), isNull(), eq(Optional.of("errors")),
+                eq(Optional.of("c2")));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+    }
+
+    @Test
+    void testChunkEmpty() {
+        assertTrue(EmbeddingRequestHandler.chunk(List.<Integer>of(), i -> i, 2, 10).isEmpty());
+    }
+
+    @Test
+    void testChunkBySize() {
+        List<List<Integer>> chunks = EmbeddingRequestHandler.chunk(List.of(1, 1, 1, 1, 1), i -> i, 2, 10);
+
+        assertEquals(List.of(List.of(1, 1), List.of(1, 1), List.of(1)), chunks);
+    }
+
+    @Test
+    void testChunkByWeight() {
+        List<List<Integer>> chunks = EmbeddingRequestHandler.chunk(List.of(4, 4, 4, 1), i -> i, 10, 8);
+
+        assertEquals(List.of(List.of(4, 4), List.of(4, 1)), chunks);
+    }
+
+    @Test
+    void testChunkKeepsHeavyItemAlone() {
+        List<List<Integer>> chunks = EmbeddingRequestHandler.chunk(List.of(1, 20, 1), i -> i, 10, 8);
+
+        assertEquals(List.of(List.of(1), List.of(20), List.of(1)), chunks);
+    }
+}
@@ -0,0 +1,60 @@
+package com.penguineering.hareairis.rmq;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ListenerShutdownTest {
+    @Mock
+    private SimpleMessageListenerContainer chatContainer;
+
+    @Mock
+    private SimpleMessageListenerContainer embeddingContainer;
+
+    @Test
+    void testStopCompletesOnceConsumersAreCancelled() {
+        ListenerShutdown shutdown = new ListenerShutdown(List.of(chatContainer, embeddingContainer));
+        shutdown.start();
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicBoolean containersStopped = new AtomicBoolean(false);
+
+        shutdown.stop(() -> stopped.set(true));
+        shutdown.whenContainersStopped(() -> containersStopped.set(true));
+
+        ArgumentCaptor<Runnable> chatStopped = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> embeddingStopped = ArgumentCaptor.forClass(Runnable.class);
+        verify(chatContainer).stop(chatStopped.capture());
+        verify(embeddingContainer).stop(embeddingStopped.capture());
+        assertFalse(shutdown.isRunning());
+        assertTrue(stopped.get(), "The phase should not wait for the listeners in progress.");
+
+        chatStopped.getValue().run();
+        assertFalse(containersStopped.get(), "The listeners of all containers must be done.");
+        embeddingStopped.getValue().run();
+        assertTrue(containersStopped.get());
+    }
+
+    @Test
+    void testWithoutContainers() {
+        ListenerShutdown shutdown = new ListenerShutdown(List.of());
+        shutdown.start();
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicBoolean containersStopped = new AtomicBoolean(false);
+
+        shutdown.stop(() -> stopped.set(true));
+        shutdown.whenContainersStopped(() -> containersStopped.set(true));
+
+        assertTrue(stopped.get());
+        assertTrue(containersStopped.get());
+    }
+}
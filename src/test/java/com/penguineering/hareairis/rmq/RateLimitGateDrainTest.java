@@ -0,0 +1,49 @@
+package com.penguineering.hareairis.rmq;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitGateDrainTest {
+    @Mock
+    private RateLimitGates rateLimitGates;
+
+    @Mock
+    private ListenerShutdown listenerShutdown;
+
+    @Test
+    void testGatesAreDrainedAfterTheWebServer() {
+        // phases stop from the highest to the lowest
+        assertTrue(ListenerShutdown.PHASE > WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE,
+                "Consumers should be cancelled before the web server shuts down.");
+        assertTrue(RateLimitGateDrain.PHASE < WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE,
+                "Gates should be drained once the web server has finished the requests in progress.");
+    }
+
+    @Test
+    void testStopDrainsAndWaitsForListeners() {
+        RateLimitGateDrain drain = new RateLimitGateDrain(rateLimitGates, listenerShutdown);
+        drain.start();
+        AtomicBoolean stopped = new AtomicBoolean(false);
+
+        drain.stop(() -> stopped.set(true));
+
+        verify(rateLimitGates).drain();
+        ArgumentCaptor<Runnable> containersStopped = ArgumentCaptor.forClass(Runnable.class);
+        verify(listenerShutdown).whenContainersStopped(containersStopped.capture());
+        assertFalse(drain.isRunning());
+        assertFalse(stopped.get(), "The drain should wait for the listeners in progress.");
+
+        containersStopped.getValue().run();
+        assertTrue(stopped.get());
+    }
+}
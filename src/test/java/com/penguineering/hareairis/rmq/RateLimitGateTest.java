@@ -1,15 +1,26 @@
 package com.penguineering.hareairis.rmq;
 
 import com.penguineering.hareairis.ai.RateLimitException;
+import com.penguineering.hareairis.jfr.GateWaitEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -72,4 +83,78 @@ class RateLimitGateTest {
 
         verify(mockThread, times(1)).interrupt();
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWaitAndExecute_RecordsGateWaitEvent(@TempDir Path tempDir) throws Exception {
+        when(protectedCall.call()).thenReturn("Success");
+        rateLimitGate.nextAvailableTime.set(Instant.now().plusMillis(200));
+
+        Path file = tempDir.resolve("gate.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(GateWaitEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            rateLimitGate.waitAndExecute(protectedCall);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.penguineering.hareairis.GateWait"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals(GateWaitEvent.REASON_RATE_LIMIT, events.getFirst().getString("reason"));
+        assertTrue(events.getFirst().getLong("rateLimitWait") >= 100,
+                "The rate limit wait should cover the back-off.");
+    }
+
+    @Test
+    void testDrain_RejectsNewCallers() throws Exception {
+        rateLimitGate.drain();
+
+        assertThrows(InterruptedException.class, () -> rateLimitGate.callWithRateLimit(protectedCall));
+        verify(protectedCall, never()).call();
+    }
+
+    @Test
+    void testDrain_InterruptsBackOff() throws Exception {
+        rateLimitGate.nextAvailableTime.set(Instant.now().plusSeconds(10));
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return rateLimitGate.waitAndExecute(protectedCall);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (rateLimitGate.backingOffThread.get() == null)
+            Thread.sleep(10);
+
+        rateLimitGate.drain();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedException.class, e.getCause().getCause());
+        verify(protectedCall, never()).call();
+    }
+
+    @Test
+    void testDrain_LetsCallInProgressFinish() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return rateLimitGate.waitAndExecute(() -> {
+                    started.countDown();
+                    release.await();
+                    return "Success";
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        rateLimitGate.drain();
+        release.countDown();
+
+        assertEquals("Success", result.get(2, TimeUnit.SECONDS));
+    }
+}